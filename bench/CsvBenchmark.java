@@ -0,0 +1,115 @@
+import controllers.CSVReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares CSVReader with the line by line reader it replaced. Kept outside src so it
+ * is not part of the application. To run it from the project folder:
+ *
+ *   javac -encoding UTF-8 -d out $(find src -name "*.java") bench/CsvBenchmark.java
+ *   java -cp out CsvBenchmark [rows]
+ */
+public class CsvBenchmark {
+
+    private static final int DEFAULT_ROWS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Writes a modules style CSV file (with a quoted lecturerIds column) of one million
+     * rows, or the number given as the first argument, reads it with both readers a few
+     * times, checks they return the same rows and prints the best time of each.
+     */
+    public static void main(String[] args) throws IOException {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        Path file = Files.createTempFile("csv-benchmark", ".csv");
+        try {
+            writeSample(file, rowCount);
+            System.out.println("Rows: " + rowCount + ", file size: " + Files.size(file) / (1024 * 1024) + " MB");
+
+            long oldBest = Long.MAX_VALUE;
+            long newBest = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                int oldCount = readLineByLine(file.toString()).size();
+                oldBest = Math.min(oldBest, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                int newCount = CSVReader.readCSV(file.toString()).size();
+                newBest = Math.min(newBest, System.nanoTime() - start);
+
+                if (oldCount != newCount) System.out.println("Row counts differ: " + oldCount + " and " + newCount);
+            }
+
+            System.out.println("Line by line reader: " + oldBest / 1_000_000 + " ms");
+            System.out.println("Mapped reader:       " + newBest / 1_000_000 + " ms");
+            System.out.println("Same rows: " + sameRows(readLineByLine(file.toString()), file.toString()));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void writeSample(Path file, int rowCount) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file.toFile()))) {
+            out.write("moduleCode,moduleName,year,semester,programmeId,lecHours,labHours,tutHours,lecturerIds\n");
+            for (int i = 0; i < rowCount; i++) {
+                out.write("CS" + (4000 + i % 1000) + ",Module " + i + "," + (1 + i % 4) + "," + (1 + i % 2)
+                        + ",LM" + (100 + i % 50) + ",2,1,0,\"" + (2000 + i % 20) + ";" + (3000 + i % 30) + "\"\n");
+            }
+        }
+    }
+
+    /** The reader CSVReader used before, kept here as the baseline. */
+    private static List<String[]> readLineByLine(String filePath) {
+        List<String[]> rows = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                if (line.trim().isEmpty()) continue;
+
+                String[] parts = Arrays.stream(line.split(","))
+                        .map(String::trim)
+                        .toArray(String[]::new);
+
+                rows.add(parts);
+
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading CSV file: " + filePath);
+            e.printStackTrace();
+        }
+        return rows;
+    }
+
+    /**
+     * Streams the file through CSVReader and compares each row with the old reader's,
+     * so only the old reader's rows are held in memory, not a second list as well.
+     * The old reader keeps the quotes, so they are ignored when comparing.
+     */
+    private static boolean sameRows(List<String[]> oldRows, String filePath) {
+        int[] next = {0};
+        boolean[] same = {true};
+        CSVReader.forEachRow(filePath, row -> {
+            if (next[0] >= oldRows.size() || !sameRow(oldRows.get(next[0]++), row)) same[0] = false;
+        });
+        return same[0] && next[0] == oldRows.size();
+    }
+
+    private static boolean sameRow(String[] oldRow, String[] newRow) {
+        if (oldRow.length != newRow.length) return false;
+        for (int i = 0; i < oldRow.length; i++) {
+            if (!oldRow[i].replace("\"", "").equals(newRow[i])) return false;
+        }
+        return true;
+    }
+}
@@ -1,18 +1,22 @@
 package Main;
 
+import controllers.Conflict;
+import controllers.ConflictReport;
 import controllers.DataManager;
 import controllers.TimetableController;
 import controllers.TimetableGenerator;
 import Model.Timetable.TimetableService;
 import View.UserInterface;
 
+import java.util.Map;
+
 public class Main {
 
     /**
      * The entry point of the UL Timetabling System.
      *
-     * This method loads all required CSV data, generates an automatic timetable,
-     * checks for any room clashes, and finally starts the command-line interface
+     * This method loads all required CSV data (each file on its own thread), generates an automatic timetable,
+     * checks for any room, lecturer or group clashes, and finally starts the command-line interface
      * so the user can interact with the system.
      */
     public static void main(String[] args) {
@@ -20,24 +24,26 @@ public class Main {
         DataManager datamanager = new DataManager();
         TimetableService service = new TimetableService();
 
-        datamanager.loadStudents("data/students.csv");
-        datamanager.loadLecturers("data/lecturers.csv");
-        datamanager.loadRooms("data/rooms.csv");
-        datamanager.loadModules("data/modules.csv");
-        datamanager.loadProgrammes("data/programmes.csv");
-        datamanager.loadAdmins("data/admins.csv");
+        Map<String, Long> loadTimes = datamanager.loadAll("data");
+        System.out.println("Load times:");
+        for (Map.Entry<String, Long> entry : loadTimes.entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue() + " ms");
+        }
+        for (String problem : datamanager.getLoadProblems()) {
+            System.out.println("Warning: " + problem);
+        }
 
         TimetableGenerator generator = new TimetableGenerator(datamanager, service);
         generator.generateAndLog("OOD-Group19-Real/data/generated_timetable.csv");
 
         TimetableController controller = new TimetableController(service, datamanager);
 
-        var conflicts = controller.findRoomConflicts();
+        ConflictReport conflicts = controller.auditConflicts();
         if (conflicts.isEmpty()) {
-            System.out.println("No room conflicts found.");
+            System.out.println("No conflicts found.");
         } else {
-            System.out.println("Room conflicts detected:");
-            for (String c : conflicts) {
+            System.out.println("Conflicts detected:");
+            for (Conflict c : conflicts.getConflicts()) {
                 System.out.println(c);
             }
         }
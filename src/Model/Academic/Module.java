@@ -1,5 +1,7 @@
 package Model.Academic;
 
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a module, each module has a name, code, and
@@ -16,6 +18,7 @@ public class Module {
     private int LecHours;
     private int LabHours;
     private int tutHours;
+    private List<String> lecturerIds = new ArrayList<>();
 
     
     /** Empty constructor for cases where fields are set later. */
@@ -91,6 +94,20 @@ public class Module {
         return tutHours;
     }
 
+    /**
+     * Gets the IDs of the lecturers who are able to teach this module,
+     * in the order they are listed in modules.csv.
+     *
+     * @return the eligible lecturer IDs
+     */
+    public List<String> getLecturerIds() {
+        return lecturerIds;
+    }
+
+    public void setLecturerIds(List<String> lecturerIds) {
+        this.lecturerIds = lecturerIds;
+    }
+
     @Override
     public String toString() {
         return moduleCode + " - " + moduleName + " (Prog " + programmeId + ") (Year " + year + ", Semester " + semester + ")" +
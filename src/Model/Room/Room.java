@@ -9,8 +9,9 @@ public class Room {
 
     private String roomId;
     private String type;
-    private int capacity;
+    private final int capacity; // final because RoomIndex keeps rooms sorted by it
     private String building;
+    private final boolean lab;
 
 
 
@@ -19,6 +20,8 @@ public class Room {
         this.type = type;
         this.capacity = capacity;
         this.building = building;
+        // treat anything with "lab" in the type as a lab (e.g. "CSlab", "Laboratory")
+        this.lab = type != null && type.toLowerCase().contains("lab");
     }
 
 
@@ -36,9 +39,6 @@ public class Room {
         return capacity;
     }
 
-    public void setCapacity(int capacity) {
-        this.capacity = capacity;
-    }
     public String getType() {
         return type;
     }
@@ -48,8 +48,7 @@ public class Room {
     }
 
     public boolean isLab() {
-        // treat anything with "lab" in the type as a lab (e.g. "CSlab", "Laboratory")
-        return type != null && type.toLowerCase().contains("lab");
+        return lab;
     }
 
 
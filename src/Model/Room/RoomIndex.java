@@ -0,0 +1,88 @@
+package Model.Room;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Groups rooms into labs and teaching rooms and keeps each group sorted by capacity,
+ * so the rooms that can hold a class can be found with a binary search
+ * instead of checking every room.
+ */
+public class RoomIndex {
+
+    private final List<Room> labs = new ArrayList<>();
+    private final List<Room> teaching = new ArrayList<>();
+    private final int[] labCapacities;
+    private final int[] teachingCapacities;
+
+    /**
+     * Builds the index from a list of rooms.
+     *
+     * @param rooms the rooms to index
+     */
+    public RoomIndex(List<Room> rooms) {
+        for (Room room : rooms) {
+            if (room.isLab()) labs.add(room);
+            else teaching.add(room);
+        }
+        labs.sort(Comparator.comparingInt(Room::getCapacity));
+        teaching.sort(Comparator.comparingInt(Room::getCapacity));
+
+        labCapacities = capacities(labs);
+        teachingCapacities = capacities(teaching);
+    }
+
+    /**
+     * Gets every room of a type that holds at least the given number of people.
+     * The result is a read-only view sorted from smallest to largest.
+     *
+     * @param lab         true for labs, false for teaching rooms
+     * @param minCapacity the smallest capacity needed
+     * @return the matching rooms
+     */
+    public List<Room> roomsWithCapacity(boolean lab, int minCapacity) {
+        List<Room> rooms = lab ? labs : teaching;
+        int from = firstWithCapacity(lab ? labCapacities : teachingCapacities, minCapacity);
+        return Collections.unmodifiableList(rooms.subList(from, rooms.size()));
+    }
+
+    /**
+     * Gets the smallest room of a type that holds at least the given number of people.
+     *
+     * @param lab         true for labs, false for teaching rooms
+     * @param minCapacity the smallest capacity needed
+     * @return the room, or null if none is big enough
+     */
+    public Room smallestWithCapacity(boolean lab, int minCapacity) {
+        List<Room> rooms = roomsWithCapacity(lab, minCapacity);
+        return rooms.isEmpty() ? null : rooms.get(0);
+    }
+
+    /**
+     * @return the number of rooms in the index
+     */
+    public int size() {
+        return labs.size() + teaching.size();
+    }
+
+    /** Binary search for the first position whose capacity is at least minCapacity. */
+    private static int firstWithCapacity(int[] capacities, int minCapacity) {
+        int low = 0, high = capacities.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (capacities[mid] < minCapacity) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private static int[] capacities(List<Room> rooms) {
+        int[] result = new int[rooms.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = rooms.get(i).getCapacity();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,201 @@
+package Model.Timetable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bookings of one room, lecturer or group, kept per day as an interval tree.
+ *
+ * Each day is a treap ordered by start hour, and every node also stores the latest
+ * end hour in its subtree. An overlap search skips any subtree whose latest end is
+ * not after the hour being checked, and everything right of a node that starts too
+ * late, so finding k matches takes O((k + 1) log n) instead of walking back through
+ * every earlier booking.
+ *
+ * A calendar never changes. Adding or removing a session returns a new calendar
+ * that only copies the O(log n) nodes on the path to it.
+ */
+public final class IntervalCalendar {
+
+    private static final IntervalCalendar EMPTY = new IntervalCalendar(Map.of());
+
+    private final Map<String, Node> days;
+
+    private IntervalCalendar(Map<String, Node> days) {
+        this.days = days;
+    }
+
+    /**
+     * @return a calendar with no bookings
+     */
+    public static IntervalCalendar empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param id      a number no other session in the calendar uses, e.g. its sequence
+     *                number in the snapshot. The same number is needed to remove it.
+     * @param session the session to add
+     * @return a calendar with the session added
+     */
+    public IntervalCalendar with(long id, ScheduledSession session) {
+        Timeslot t = session.getTimeslot();
+        if (t == null) return this;
+        Node root = days.get(t.getDay());
+        return replaceDay(t.getDay(), insert(root, new Node(session, id, null, null)));
+    }
+
+    /**
+     * @param id      the number the session was added with
+     * @param session the session to remove
+     * @return a calendar without the session, or this calendar if it was not in it
+     */
+    public IntervalCalendar without(long id, ScheduledSession session) {
+        Timeslot t = session.getTimeslot();
+        if (t == null) return this;
+        Node root = days.get(t.getDay());
+        Node next = delete(root, t.getStartHour(), id);
+        return next == root ? this : replaceDay(t.getDay(), next);
+    }
+
+    /**
+     * Finds every booked session that overlaps a timeslot, in start time order.
+     *
+     * @param timeslot the time to check
+     * @return the overlapping sessions, empty if the time is free
+     */
+    public List<ScheduledSession> overlapping(Timeslot timeslot) {
+        if (timeslot == null) return List.of();
+        Node root = days.get(timeslot.getDay());
+        if (root == null) return List.of();
+
+        List<ScheduledSession> result = new ArrayList<>();
+        collect(root, timeslot.getStartHour(), timeslot.getStartHour() + timeslot.getDuration(), result);
+        return result;
+    }
+
+    /**
+     * @param timeslot the time to check
+     * @return true if nothing in the calendar overlaps the timeslot
+     */
+    public boolean isFree(Timeslot timeslot) {
+        if (timeslot == null) return true;
+        Node root = days.get(timeslot.getDay());
+        return !anyOverlap(root, timeslot.getStartHour(), timeslot.getStartHour() + timeslot.getDuration());
+    }
+
+    /**
+     * @return true if the calendar has no bookings
+     */
+    public boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    private IntervalCalendar replaceDay(String dayName, Node root) {
+        Map<String, Node> next = new HashMap<>(days); // at most one entry per day of the week
+        if (root == null) next.remove(dayName);
+        else next.put(dayName, root);
+        return next.isEmpty() ? EMPTY : new IntervalCalendar(next);
+    }
+
+    /** Adds the sessions overlapping [start, end) in order, skipping subtrees that can not hold one. */
+    private static void collect(Node node, int start, int end, List<ScheduledSession> out) {
+        if (node == null || node.maxEnd <= start) return;
+        collect(node.left, start, end, out);
+        if (node.start >= end) return; // this node and everything right of it start too late
+        if (node.end > start) out.add(node.session);
+        collect(node.right, start, end, out);
+    }
+
+    private static boolean anyOverlap(Node node, int start, int end) {
+        if (node == null || node.maxEnd <= start) return false;
+        if (anyOverlap(node.left, start, end)) return true;
+        if (node.start >= end) return false;
+        return node.end > start || anyOverlap(node.right, start, end);
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) return added;
+        if (added.priority > node.priority) {
+            Node[] halves = split(node, added.start, added.id);
+            return new Node(added.session, added.id, halves[0], halves[1]);
+        }
+        if (before(added.start, added.id, node)) return node.withLeft(insert(node.left, added));
+        return node.withRight(insert(node.right, added));
+    }
+
+    private static Node delete(Node node, int start, long id) {
+        if (node == null) return null;
+        if (node.start == start && node.id == id) return merge(node.left, node.right);
+        if (before(start, id, node)) {
+            Node left = delete(node.left, start, id);
+            return left == node.left ? node : node.withLeft(left);
+        }
+        Node right = delete(node.right, start, id);
+        return right == node.right ? node : node.withRight(right);
+    }
+
+    /** Splits a subtree into the bookings ordered before (start, id) and the ones after. */
+    private static Node[] split(Node node, int start, long id) {
+        if (node == null) return new Node[2];
+        if (before(start, id, node)) {
+            Node[] halves = split(node.left, start, id);
+            halves[1] = node.withLeft(halves[1]);
+            return halves;
+        }
+        Node[] halves = split(node.right, start, id);
+        halves[0] = node.withRight(halves[0]);
+        return halves;
+    }
+
+    private static Node merge(Node low, Node high) {
+        if (low == null) return high;
+        if (high == null) return low;
+        if (low.priority >= high.priority) return low.withRight(merge(low.right, high));
+        return high.withLeft(merge(low, high.left));
+    }
+
+    /** Bookings are ordered by start hour, then by ID. */
+    private static boolean before(int start, long id, Node node) {
+        return start < node.start || (start == node.start && id < node.id);
+    }
+
+    /** One booking, with the latest end hour of every booking under it. */
+    private static final class Node {
+
+        final ScheduledSession session;
+        final long id;
+        final int start;
+        final int end;
+        final int priority;
+        final Node left;
+        final Node right;
+        final int maxEnd;
+
+        Node(ScheduledSession session, long id, Node left, Node right) {
+            Timeslot t = session.getTimeslot();
+            this.session = session;
+            this.id = id;
+            this.start = t.getStartHour();
+            this.end = t.getStartHour() + t.getDuration();
+            int h = Long.hashCode(id) * 0x9E3779B9; // scrambled so IDs given in order still balance
+            this.priority = h ^ (h >>> 16);
+            this.left = left;
+            this.right = right;
+            int latest = end;
+            if (left != null) latest = Math.max(latest, left.maxEnd);
+            if (right != null) latest = Math.max(latest, right.maxEnd);
+            this.maxEnd = latest;
+        }
+
+        Node withLeft(Node left) {
+            return new Node(session, id, left, right);
+        }
+
+        Node withRight(Node right) {
+            return new Node(session, id, left, right);
+        }
+    }
+}
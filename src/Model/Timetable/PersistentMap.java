@@ -0,0 +1,241 @@
+package Model.Timetable;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted map that never changes. Putting or removing a key returns a new map that
+ * shares everything except the O(log n) nodes on the path to that key, so a timetable
+ * snapshot can make its next version without copying the sessions it does not touch.
+ *
+ * It is a treap: a binary search tree on the keys that is also a heap on a priority
+ * worked out from each key's hash, which keeps it balanced on average whatever order
+ * the keys arrive in. Every node knows the size of its subtree, so the values can be
+ * read by position as a List.
+ */
+final class PersistentMap<K, V> {
+
+    private final Comparator<? super K> order;
+    private final Node<K, V> root;
+
+    private PersistentMap(Comparator<? super K> order, Node<K, V> root) {
+        this.order = order;
+        this.root = root;
+    }
+
+    /**
+     * @return an empty map sorted by the keys' natural order
+     */
+    static <K extends Comparable<? super K>, V> PersistentMap<K, V> empty() {
+        return new PersistentMap<>(Comparator.naturalOrder(), null);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value for the key, or null if there is none
+     */
+    V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = order.compare(key, node.key);
+            if (c == 0) return node.value;
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value to store under it
+     * @return a map with the key set to the value
+     */
+    PersistentMap<K, V> put(K key, V value) {
+        return new PersistentMap<>(order, insert(root, key, value, priority(key)));
+    }
+
+    /**
+     * @param key the key to take out
+     * @return a map without the key, or this map if the key was not in it
+     */
+    PersistentMap<K, V> remove(K key) {
+        Node<K, V> next = delete(root, key);
+        return next == root ? this : new PersistentMap<>(order, next);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Finds the key a value is stored under by checking every entry, for small maps only.
+     *
+     * @param value the value, compared by identity
+     * @return its key, or null if the value is not in the map
+     */
+    K keyOf(V value) {
+        for (Iterator<Node<K, V>> it = nodes(); it.hasNext(); ) {
+            Node<K, V> node = it.next();
+            if (node.value == value) return node.key;
+        }
+        return null;
+    }
+
+    /**
+     * @return the values in key order, read-only. The list is a view, so it costs nothing
+     *         to make and get(i) takes O(log n).
+     */
+    List<V> values() {
+        return new AbstractList<>() {
+            @Override
+            public V get(int index) {
+                if (index < 0 || index >= PersistentMap.size(root)) throw new IndexOutOfBoundsException(index);
+                Node<K, V> node = root;
+                while (true) {
+                    int leftSize = PersistentMap.size(node.left);
+                    if (index < leftSize) {
+                        node = node.left;
+                    } else if (index == leftSize) {
+                        return node.value;
+                    } else {
+                        index -= leftSize + 1;
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public int size() {
+                return PersistentMap.size(root);
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Node<K, V>> nodes = nodes();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return nodes.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return nodes.next().value;
+                    }
+                };
+            }
+        };
+    }
+
+    /** Walks the nodes in key order with a stack as deep as the tree. */
+    private Iterator<Node<K, V>> nodes() {
+        Deque<Node<K, V>> stack = new ArrayDeque<>();
+        for (Node<K, V> n = root; n != null; n = n.left) stack.push(n);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Node<K, V> next() {
+                if (stack.isEmpty()) throw new NoSuchElementException();
+                Node<K, V> node = stack.pop();
+                for (Node<K, V> n = node.right; n != null; n = n.left) stack.push(n);
+                return node;
+            }
+        };
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value, int priority) {
+        if (node == null) return new Node<>(key, value, priority, null, null);
+        int c = order.compare(key, node.key);
+        if (c == 0) return new Node<>(key, value, node.priority, node.left, node.right);
+        // A key's priority never changes, so a key ranking above this node can not be under it.
+        if (priority > node.priority) {
+            Node<K, V>[] halves = split(node, key);
+            return new Node<>(key, value, priority, halves[0], halves[1]);
+        }
+        if (c < 0) return node.withLeft(insert(node.left, key, value, priority));
+        return node.withRight(insert(node.right, key, value, priority));
+    }
+
+    private Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) return null;
+        int c = order.compare(key, node.key);
+        if (c == 0) return merge(node.left, node.right);
+        if (c < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : node.withLeft(left);
+        }
+        Node<K, V> right = delete(node.right, key);
+        return right == node.right ? node : node.withRight(right);
+    }
+
+    /** Splits a subtree that does not hold the key into the keys below it and the keys above it. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node<K, V>[] split(Node<K, V> node, K key) {
+        if (node == null) return new Node[2];
+        if (order.compare(key, node.key) < 0) {
+            Node<K, V>[] halves = split(node.left, key);
+            halves[1] = node.withLeft(halves[1]);
+            return halves;
+        }
+        Node<K, V>[] halves = split(node.right, key);
+        halves[0] = node.withRight(halves[0]);
+        return halves;
+    }
+
+    /** Joins two subtrees where every key in the first is below every key in the second. */
+    private static <K, V> Node<K, V> merge(Node<K, V> low, Node<K, V> high) {
+        if (low == null) return high;
+        if (high == null) return low;
+        if (low.priority >= high.priority) return low.withRight(merge(low.right, high));
+        return high.withLeft(merge(low, high.left));
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /** Scrambles the key's hash so keys that arrive in order still give a balanced tree. */
+    private static int priority(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+        final V value;
+        final int priority;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int size;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node<K, V> withLeft(Node<K, V> left) {
+            return new Node<>(key, value, priority, left, right);
+        }
+
+        Node<K, V> withRight(Node<K, V> right) {
+            return new Node<>(key, value, priority, left, right);
+        }
+    }
+}
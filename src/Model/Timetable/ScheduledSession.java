@@ -4,6 +4,9 @@ import Model.Academic.Module;
 import Model.People.Lecturer;
 import Model.Room.Room;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 /**
  * Represents a single scheduled session in the timetable,
  * containing a module, lecturer, room, timeslot and student group.
@@ -16,6 +19,7 @@ public class ScheduledSession {
     private Room room;
     private Timeslot timeslot;
     private String groupId;
+    private int sessionId;
 
     /** Default constructor. */
     public ScheduledSession(){
@@ -82,6 +86,23 @@ public class ScheduledSession {
         return groupId;
     }
 
+    /**
+     * @return the permanent ID of this session, or 0 if it has not been given one yet
+     */
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Sets the permanent ID. The TimetableService hands these out when a session is added
+     * and they are saved in the sessionId column of the sessions CSV.
+     *
+     * @param sessionId the ID, or 0 for none
+     */
+    public void setSessionId(int sessionId) {
+        this.sessionId = sessionId;
+    }
+
     /**
      * Returns a readable formatted version of the timetable entry.
      *
@@ -89,11 +110,30 @@ public class ScheduledSession {
      */
     @Override
     public String toString() {
-        return module.getModuleCode() +
-                "   " + lecturer.getName() +
-                "   " + room.getRoomId() +
-                "   " + timeslot.toString() +
-                "   Group: " + groupId;
+        StringBuilder sb = new StringBuilder(64);
+        try {
+            appendTo(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the same text as toString straight to a writer or builder,
+     * without making a String for the whole line first.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    public void appendTo(Appendable out) throws IOException {
+        out.append(module.getModuleCode())
+                .append("   ").append(lecturer.getName())
+                .append("   ").append(room.getRoomId())
+                .append("   ").append(timeslot.getDay())
+                .append(' ').append(Integer.toString(timeslot.getStartHour())).append(":00 to ")
+                .append(Integer.toString(timeslot.getStartHour() + timeslot.getDuration())).append(":00")
+                .append("   Group: ").append(groupId);
     }
 
     public boolean sameTimeWith(ScheduledSession other) {
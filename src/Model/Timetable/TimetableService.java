@@ -1,83 +1,311 @@
 package Model.Timetable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Handles timetable-related logic such as storing sessions and
  * checking for clashes when new sessions are added.
+ *
+ * The timetable is held as a TimetableSnapshot. Readers just take the current
+ * snapshot, so they never wait and never see a change half done. Each change builds
+ * the next version and publishes it with a compare-and-set.
+ *
+ * The service can be used by several threads at once. A change locks one stripe for
+ * every (room, day, hour), (lecturer, day, hour) and (named group, day, hour) the
+ * session covers, so the clash check and the publish happen together, while bookings
+ * that can not clash with each other run in parallel.
+ *
+ * The service also gives each session its ID. The ID table is only changed while the
+ * session's stripes are held, so a session is in the table exactly when it is in the
+ * current snapshot, and two edits of the same ID always take turns.
  */
 public class TimetableService {
 
-    private List<ScheduledSession> sessions;
+    private static final int STRIPES = 256;
+
+    private final AtomicReference<TimetableSnapshot> current = new AtomicReference<>(TimetableSnapshot.empty());
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Integer, ScheduledSession> sessionsById = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextSessionId = new AtomicInteger(1);
 
     public TimetableService() {
-        this.sessions = new ArrayList<>();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
     }
 
     /**
      * Loads a new list of sessions into the system and replaces any existing ones.
+     * Every stripe is held while the new timetable is swapped in, so a change that is
+     * part way through waits for the load and then checks against the new sessions.
+     * Sessions keep the IDs they already have, the rest are given the next free ID.
      *
      * @param loaded the list of sessions to load
      */
     public void loadSessions(List<ScheduledSession> loaded) {
-        sessions = new ArrayList<>();
-        sessions.addAll(loaded);
+        TreeSet<Integer> all = new TreeSet<>();
+        for (int i = 0; i < STRIPES; i++) {
+            all.add(i);
+        }
+        int[] locked = lock(all);
+        try {
+            TimetableSnapshot old = current.get();
+            sessionsById.clear();
+            for (ScheduledSession s : loaded) {
+                storeId(s);
+            }
+            current.set(TimetableSnapshot.of(old.getVersion() + 1, loaded));
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Gets the current version of the timetable. The snapshot never changes,
+     * so it can be read for as long as needed without locking.
+     *
+     * @return the current snapshot
+     */
+    public TimetableSnapshot snapshot() {
+        return current.get();
     }
 
     /**
      * Attempts to add a new session to the timetable.
-     * If there are clashes then the session is not added.
+     * If there are clashes then the session is not added,
+     * otherwise it is given the next free ID.
      *
      * @param newSession the session to add
      * @return a list of conflict messages, empty if the session is valid
      */
     public List<String> addSession(ScheduledSession newSession) {
-        List<String> conflicts = new ArrayList<>();
+        int[] locked = lock(stripesFor(newSession));
+        try {
+            List<String> conflicts = findConflicts(current.get(), newSession, null);
+            if (conflicts.isEmpty()) {
+                storeId(newSession);
+                publish(List.of(), List.of(newSession));
+            }
+            return conflicts;
+        } finally {
+            unlock(locked);
+        }
+    }
 
-        for (ScheduledSession existing : sessions) {
-            if (existing.sameTimeWith(newSession)) {
+    /**
+     * Adds a batch of sessions in one step. Each row is checked against the timetable
+     * and against the earlier rows of the batch. If any row clashes nothing is added,
+     * otherwise the whole batch is published as a single new version.
+     *
+     * @param batch the sessions to add
+     * @return the conflict messages of each clashing row by row number, empty if the batch was added
+     */
+    public Map<Integer, List<String>> addSessions(List<ScheduledSession> batch) {
+        TreeSet<Integer> needed = new TreeSet<>();
+        for (ScheduledSession s : batch) {
+            needed.addAll(stripesFor(s));
+        }
+        int[] locked = lock(needed);
+        try {
+            TimetableSnapshot snapshot = current.get();
+            Map<Integer, List<String>> report = new TreeMap<>();
+            // earlier rows by (room, lecturer or group, day, hour), so each check is one lookup per hour
+            Map<String, List<Integer>> batchHours = new HashMap<>();
 
-                // Room conflict
-                if (existing.getRoom().equals(newSession.getRoom())) {
-                    conflicts.add("ROOM conflict with " + existing);
+            for (int row = 0; row < batch.size(); row++) {
+                ScheduledSession s = batch.get(row);
+                List<String> conflicts = findConflicts(snapshot, s, null);
+
+                for (int earlier : earlierRows(batchHours, "R" + roomKey(s), s)) {
+                    ScheduledSession other = batch.get(earlier);
+                    if (other.sameTimeWith(s) && s.getRoom().equals(other.getRoom())) {
+                        conflicts.add("ROOM conflict with row " + earlier + ": " + other);
+                    }
+                }
+                for (int earlier : earlierRows(batchHours, "L" + lecturerKey(s), s)) {
+                    ScheduledSession other = batch.get(earlier);
+                    if (other.sameTimeWith(s) && s.getLecturer().equals(other.getLecturer())) {
+                        conflicts.add("LECTURER conflict with row " + earlier + ": " + other);
+                    }
+                }
+                for (int earlier : earlierRows(batchHours, "G" + groupKey(s), s)) {
+                    ScheduledSession other = batch.get(earlier);
+                    if (other.sameTimeWith(s) && s.getGroupId().equalsIgnoreCase(other.getGroupId())) {
+                        conflicts.add("GROUP conflict with row " + earlier + ": " + other);
+                    }
                 }
 
-                // Lecturer conflict
-                if (existing.getLecturer().equals(newSession.getLecturer())) {
-                    conflicts.add("LECTURER conflict with " + existing);
+                if (!conflicts.isEmpty()) report.put(row, conflicts);
+                if (roomKey(s) != null) addRow(batchHours, "R" + roomKey(s), s, row);
+                if (lecturerKey(s) != null) addRow(batchHours, "L" + lecturerKey(s), s, row);
+                if (groupKey(s) != null) addRow(batchHours, "G" + groupKey(s), s, row);
+            }
+
+            if (report.isEmpty() && !batch.isEmpty()) {
+                for (ScheduledSession s : batch) {
+                    storeId(s);
                 }
+                publish(List.of(), batch);
             }
+            return report;
+        } finally {
+            unlock(locked);
         }
+    }
 
-        if (conflicts.isEmpty()) {
-            sessions.add(newSession);
+    /**
+     * Swaps a session for a new version in one step. The new version is checked
+     * against every other session, and if it clashes the old one is kept.
+     * The new version takes over the old one's ID.
+     *
+     * @param oldSession the session to replace
+     * @param newSession the new version
+     * @return a list of conflict messages, empty if the session was replaced
+     */
+    public List<String> replaceSession(ScheduledSession oldSession, ScheduledSession newSession) {
+        TreeSet<Integer> needed = stripesFor(oldSession);
+        needed.addAll(stripesFor(newSession));
+        int[] locked = lock(needed);
+        try {
+            TimetableSnapshot snapshot = current.get();
+            if (!contains(snapshot, oldSession)) {
+                return new ArrayList<>(List.of("Session is no longer in the timetable: " + oldSession));
+            }
+            List<String> conflicts = findConflicts(snapshot, newSession, oldSession);
+            if (conflicts.isEmpty()) {
+                sessionsById.remove(oldSession.getSessionId(), oldSession);
+                newSession.setSessionId(oldSession.getSessionId());
+                storeId(newSession);
+                publish(List.of(oldSession), List.of(newSession));
+            }
+            return conflicts;
+        } finally {
+            unlock(locked);
         }
+    }
 
-        return conflicts;
+    /**
+     * Puts back a session that was in the timetable before, without checking for clashes.
+     * Used to undo a removal when an update fails.
+     *
+     * @param session the session to restore
+     */
+    public void restoreSession(ScheduledSession session) {
+        int[] locked = lock(stripesFor(session));
+        try {
+            storeId(session);
+            publish(List.of(), List.of(session));
+        } finally {
+            unlock(locked);
+        }
     }
 
     /**
-     * @return all sessions stored in the timetable
+     * Removes a session from the timetable.
+     *
+     * @param session the session to remove
+     * @return true if the session was in the timetable
+     */
+    public boolean removeSession(ScheduledSession session) {
+        int[] locked = lock(stripesFor(session));
+        try {
+            if (!contains(current.get(), session)) return false;
+            sessionsById.remove(session.getSessionId(), session);
+            publish(List.of(session), List.of());
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Removes a session by its ID. The ID is not handed out again.
+     *
+     * @param id the session ID
+     * @return the removed session, or null if there was none
+     */
+    public ScheduledSession removeSession(int id) {
+        while (true) {
+            ScheduledSession session = sessionsById.get(id);
+            if (session == null) return null;
+            int[] locked = lock(stripesFor(session));
+            try {
+                // the session may have been replaced before its stripes were locked
+                if (sessionsById.get(id) != session) continue;
+                sessionsById.remove(id);
+                publish(List.of(session), List.of());
+                return session;
+            } finally {
+                unlock(locked);
+            }
+        }
+    }
+
+    /**
+     * @param id the session ID
+     * @return the session with that ID, or null if there is none
+     */
+    public ScheduledSession findSession(int id) {
+        return sessionsById.get(id);
+    }
+
+    /**
+     * @return a copy of the sessions with their IDs, in ID order
+     */
+    public List<ScheduledSession> getStoredSessions() {
+        return new ArrayList<>(sessionsById.values());
+    }
+
+    /**
+     * Finds every session that ScheduledSession.sameTimeWith says clashes with the given one
+     * (same room, lecturer or named group at an overlapping time). Only the calendars of the
+     * session's own room, lecturer and group are searched.
+     *
+     * @param session the session to check
+     * @return the clashing sessions, empty if there are none
+     */
+    public List<ScheduledSession> findClashes(ScheduledSession session) {
+        TimetableSnapshot snapshot = snapshot();
+        List<ScheduledSession> candidates = new ArrayList<>(snapshot.overlappingInRoom(session));
+        candidates.addAll(snapshot.overlappingForLecturer(session));
+        String groupId = session.getGroupId();
+        if (groupId != null && !groupId.equalsIgnoreCase("ALL")) {
+            candidates.addAll(snapshot.overlappingForGroup(session));
+        }
+
+        List<ScheduledSession> clashes = new ArrayList<>();
+        for (ScheduledSession existing : candidates) {
+            if (existing.sameTimeWith(session) && !containsSame(clashes, existing)) {
+                clashes.add(existing);
+            }
+        }
+        return clashes;
+    }
+
+    /**
+     * @return all sessions in the current version, read-only
      */
     public List<ScheduledSession> getAllSessions() {
-        return sessions;
+        return snapshot().getSessions();
     }
 
     /**
      * Gets all sessions taught by a lecturer.
      *
-     * @param lecturerName the lecturer's name
+     * @param lecturerId the lecturer's ID
      * @return matching sessions
      */
-    public List<ScheduledSession> getSessionsForLecturer(String lecturerName) {
-        List<ScheduledSession> result = new ArrayList<>();
-        for (ScheduledSession s : sessions) {
-            if (s.getLecturer().getName().equalsIgnoreCase(lecturerName)) {
-                result.add(s);
-            }
-        }
-        return result;
+    public List<ScheduledSession> getSessionsForLecturer(String lecturerId) {
+        return new ArrayList<>(snapshot().getSessionsForLecturer(lecturerId));
     }
 
     /**
@@ -87,13 +315,7 @@ public class TimetableService {
      * @return matching sessions
      */
     public List<ScheduledSession> getSessionsForRoom(String roomId) {
-        List<ScheduledSession> result = new ArrayList<>();
-        for (ScheduledSession s : sessions) {
-            if (s.getRoom().getRoomId().equalsIgnoreCase(roomId)) {
-                result.add(s);
-            }
-        }
-        return result;
+        return new ArrayList<>(snapshot().getSessionsForRoom(roomId));
     }
 
     /**
@@ -103,12 +325,194 @@ public class TimetableService {
      * @return matching sessions
      */
     public List<ScheduledSession> getSessionsForModule(String moduleCode) {
-        List<ScheduledSession> result = new ArrayList<>();
-        for (ScheduledSession s : sessions) {
-            if (s.getModule().getModuleCode().equalsIgnoreCase(moduleCode)) {
-                result.add(s);
+        return new ArrayList<>(snapshot().getSessionsForModule(moduleCode));
+    }
+
+    /**
+     * Gets all sessions for a named student group e.g. "G1".
+     *
+     * @param groupId the group ID
+     * @return matching sessions
+     */
+    public List<ScheduledSession> getSessionsForGroup(String groupId) {
+        return new ArrayList<>(snapshot().getSessionsForGroup(groupId));
+    }
+
+    /**
+     * Gets the sessions for the whole class ("ALL") of a programme year and semester.
+     *
+     * @param programmeId the programme ID
+     * @param year        the academic year
+     * @param semester    the semester number
+     * @return matching sessions
+     */
+    public List<ScheduledSession> getSessionsForCohort(String programmeId, int year, int semester) {
+        return new ArrayList<>(snapshot().getSessionsForCohort(programmeId, year, semester));
+    }
+
+    /**
+     * Applies a change on top of whatever version is current. Changes that hold
+     * different stripes can not clash, so if another one was published first the
+     * change is simply applied again to the newer version. A reload holds every
+     * stripe, so it can never be what moved the version on here.
+     */
+    private void publish(List<ScheduledSession> removed, List<ScheduledSession> added) {
+        while (true) {
+            TimetableSnapshot base = current.get();
+            if (current.compareAndSet(base, base.with(removed, added))) return;
+        }
+    }
+
+    /**
+     * Gives a session an ID while its stripes are held. It keeps the ID it has if that
+     * is not already used, otherwise it is given the next free ID.
+     */
+    private void storeId(ScheduledSession s) {
+        int id = s.getSessionId();
+        while (id <= 0 || sessionsById.putIfAbsent(id, s) != null) {
+            id = nextSessionId.getAndIncrement();
+        }
+        s.setSessionId(id);
+        nextSessionId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private static boolean containsSame(List<ScheduledSession> list, ScheduledSession session) {
+        for (ScheduledSession s : list) {
+            if (s == session) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(TimetableSnapshot snapshot, ScheduledSession session) {
+        List<ScheduledSession> candidates = session.getRoom() != null
+                ? snapshot.sameRoom(session) : snapshot.getSessions();
+        for (ScheduledSession s : candidates) {
+            if (s == session) return true;
+        }
+        return false;
+    }
+
+    /** Room, lecturer and named group clashes, found through the new session's own calendars. */
+    private static List<String> findConflicts(TimetableSnapshot snapshot, ScheduledSession newSession,
+                                              ScheduledSession ignore) {
+        List<String> conflicts = new ArrayList<>();
+
+        // Room conflict
+        if (newSession.getRoom() != null) {
+            for (ScheduledSession existing : snapshot.overlappingInRoom(newSession)) {
+                if (existing != ignore && existing.sameTimeWith(newSession)
+                        && newSession.getRoom().equals(existing.getRoom())) {
+                    conflicts.add("ROOM conflict with " + existing);
+                }
             }
         }
+
+        // Lecturer conflict
+        if (newSession.getLecturer() != null) {
+            for (ScheduledSession existing : snapshot.overlappingForLecturer(newSession)) {
+                if (existing != ignore && existing.sameTimeWith(newSession)
+                        && newSession.getLecturer().equals(existing.getLecturer())) {
+                    conflicts.add("LECTURER conflict with " + existing);
+                }
+            }
+        }
+
+        // Group conflict, "ALL" is checked per cohort by the generators instead
+        if (groupKey(newSession) != null) {
+            for (ScheduledSession existing : snapshot.overlappingForGroup(newSession)) {
+                if (existing != ignore && existing.sameTimeWith(newSession)
+                        && newSession.getGroupId().equalsIgnoreCase(existing.getGroupId())) {
+                    conflicts.add("GROUP conflict with " + existing);
+                }
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Gets the earlier batch rows booked with a resource in any hour of a session.
+     *
+     * @param batchHours the rows booked so far, by hourKey
+     * @param resource   the room, lecturer or group, as used in hourKey
+     * @return the row numbers in order, each once
+     */
+    private static TreeSet<Integer> earlierRows(Map<String, List<Integer>> batchHours, String resource,
+                                                ScheduledSession s) {
+        TreeSet<Integer> rows = new TreeSet<>();
+        Timeslot t = s.getTimeslot();
+        if (t == null) return rows;
+        for (int h = t.getStartHour(); h < t.getStartHour() + t.getDuration(); h++) {
+            rows.addAll(batchHours.getOrDefault(hourKey(resource, t.getDay(), h), List.of()));
+        }
+        return rows;
+    }
+
+    private static void addRow(Map<String, List<Integer>> batchHours, String resource, ScheduledSession s, int row) {
+        Timeslot t = s.getTimeslot();
+        if (t == null) return;
+        for (int h = t.getStartHour(); h < t.getStartHour() + t.getDuration(); h++) {
+            batchHours.computeIfAbsent(hourKey(resource, t.getDay(), h), k -> new ArrayList<>()).add(row);
+        }
+    }
+
+    private static String hourKey(String resource, String day, int hour) {
+        return resource + "/" + day + "/" + hour;
+    }
+
+    /**
+     * Works out the stripes for every hour a session takes in its room, with its lecturer
+     * and with its named group. Two sessions that could clash always share at least one stripe.
+     */
+    private static TreeSet<Integer> stripesFor(ScheduledSession s) {
+        TreeSet<Integer> result = new TreeSet<>();
+        Timeslot t = s.getTimeslot();
+        if (t == null) return result;
+        String roomKey = roomKey(s);
+        String lecturerKey = lecturerKey(s);
+        String groupKey = groupKey(s);
+        for (int h = t.getStartHour(); h < t.getStartHour() + t.getDuration(); h++) {
+            if (roomKey != null) result.add(stripe("R" + roomKey, t.getDay(), h));
+            if (lecturerKey != null) result.add(stripe("L" + lecturerKey, t.getDay(), h));
+            if (groupKey != null) result.add(stripe("G" + groupKey, t.getDay(), h));
+        }
         return result;
     }
+
+    private static int stripe(String resource, String day, int hour) {
+        int hash = (resource.hashCode() * 31 + (day == null ? 0 : day.hashCode())) * 31 + hour;
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /** Locks the stripes in ascending order so two changes can never wait on each other. */
+    private int[] lock(TreeSet<Integer> needed) {
+        int[] locked = new int[needed.size()];
+        int i = 0;
+        for (int stripe : needed) {
+            stripes[stripe].lock();
+            locked[i++] = stripe;
+        }
+        return locked;
+    }
+
+    private void unlock(int[] locked) {
+        for (int i = locked.length - 1; i >= 0; i--) {
+            stripes[locked[i]].unlock();
+        }
+    }
+
+    private static String roomKey(ScheduledSession s) {
+        return s.getRoom() == null ? null : s.getRoom().getRoomId().toLowerCase();
+    }
+
+    private static String lecturerKey(ScheduledSession s) {
+        if (s.getLecturer() == null || s.getLecturer().getLecturerId() == null) return null;
+        return s.getLecturer().getLecturerId().toLowerCase();
+    }
+
+    /** The named group of a session, or null for "ALL" and sessions without a group. */
+    private static String groupKey(ScheduledSession s) {
+        String groupId = s.getGroupId();
+        if (groupId == null || groupId.equalsIgnoreCase("ALL")) return null;
+        return groupId.toLowerCase();
+    }
 }
@@ -0,0 +1,351 @@
+package Model.Timetable;
+
+import Model.Academic.Module;
+
+import java.util.List;
+
+/**
+ * One version of the timetable that never changes once it is built.
+ *
+ * Each change to the timetable makes a new snapshot with the next version number.
+ * The sessions, the indexes and every slice of an index are PersistentMaps, so a
+ * change only rebuilds the O(log n) nodes on the path to each session it touches and
+ * shares everything else with the previous version. Readers can keep using an old
+ * snapshot without any locking while new versions are published.
+ *
+ * Every session gets a sequence number when it joins the timetable. The lists handed
+ * out are in that order, which is the order the sessions were added.
+ *
+ * Sessions are indexed by room ID, lecturer ID, module code and student group,
+ * all compared without case. Rooms, lecturers and groups also get an IntervalCalendar
+ * so the sessions overlapping a time can be found without checking all of their sessions.
+ */
+public class TimetableSnapshot {
+
+    private static final TimetableSnapshot EMPTY = new TimetableSnapshot(0, 0, 0, PersistentMap.empty(),
+            PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty(),
+            PersistentMap.empty(), PersistentMap.empty(), PersistentMap.empty());
+
+    private final long version;
+    private final long loadVersion;
+    private final long nextSeq;
+    private final PersistentMap<Long, ScheduledSession> sessions;
+    private final PersistentMap<String, PersistentMap<Long, ScheduledSession>> byRoom;
+    private final PersistentMap<String, PersistentMap<Long, ScheduledSession>> byLecturer;
+    private final PersistentMap<String, PersistentMap<Long, ScheduledSession>> byModule;
+    private final PersistentMap<String, PersistentMap<Long, ScheduledSession>> byGroup;
+    private final PersistentMap<String, IntervalCalendar> roomCalendars;
+    private final PersistentMap<String, IntervalCalendar> lecturerCalendars;
+    private final PersistentMap<String, IntervalCalendar> groupCalendars;
+
+    private TimetableSnapshot(long version, long loadVersion, long nextSeq,
+                              PersistentMap<Long, ScheduledSession> sessions,
+                              PersistentMap<String, PersistentMap<Long, ScheduledSession>> byRoom,
+                              PersistentMap<String, PersistentMap<Long, ScheduledSession>> byLecturer,
+                              PersistentMap<String, PersistentMap<Long, ScheduledSession>> byModule,
+                              PersistentMap<String, PersistentMap<Long, ScheduledSession>> byGroup,
+                              PersistentMap<String, IntervalCalendar> roomCalendars,
+                              PersistentMap<String, IntervalCalendar> lecturerCalendars,
+                              PersistentMap<String, IntervalCalendar> groupCalendars) {
+        this.version = version;
+        this.loadVersion = loadVersion;
+        this.nextSeq = nextSeq;
+        this.sessions = sessions;
+        this.byRoom = byRoom;
+        this.byLecturer = byLecturer;
+        this.byModule = byModule;
+        this.byGroup = byGroup;
+        this.roomCalendars = roomCalendars;
+        this.lecturerCalendars = lecturerCalendars;
+        this.groupCalendars = groupCalendars;
+    }
+
+    /**
+     * @return the snapshot of an empty timetable, version 0
+     */
+    public static TimetableSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds a snapshot holding the given sessions.
+     *
+     * @param version  the version number to give it
+     * @param sessions the sessions in the timetable
+     * @return the new snapshot
+     */
+    public static TimetableSnapshot of(long version, List<ScheduledSession> sessions) {
+        TimetableSnapshot loaded = EMPTY.with(List.of(), sessions);
+        return new TimetableSnapshot(version, version, loaded.nextSeq, loaded.sessions,
+                loaded.byRoom, loaded.byLecturer, loaded.byModule, loaded.byGroup,
+                loaded.roomCalendars, loaded.lecturerCalendars, loaded.groupCalendars);
+    }
+
+    /**
+     * Makes the next version with sessions removed and added. Only the slices and
+     * calendars of the rooms, lecturers, modules and groups in the change are touched,
+     * so the cost grows with the size of the change, not the timetable.
+     *
+     * @param removed the sessions to take out
+     * @param added   the sessions to put in
+     * @return the new snapshot
+     */
+    public TimetableSnapshot with(List<ScheduledSession> removed, List<ScheduledSession> added) {
+        PersistentMap<Long, ScheduledSession> nextSessions = sessions;
+        PersistentMap<String, PersistentMap<Long, ScheduledSession>> rooms = byRoom;
+        PersistentMap<String, PersistentMap<Long, ScheduledSession>> lecturers = byLecturer;
+        PersistentMap<String, PersistentMap<Long, ScheduledSession>> modules = byModule;
+        PersistentMap<String, PersistentMap<Long, ScheduledSession>> groups = byGroup;
+        PersistentMap<String, IntervalCalendar> roomDays = roomCalendars;
+        PersistentMap<String, IntervalCalendar> lecturerDays = lecturerCalendars;
+        PersistentMap<String, IntervalCalendar> groupDays = groupCalendars;
+
+        for (ScheduledSession s : removed) {
+            Long seq = seqOf(s);
+            if (seq == null || nextSessions.get(seq) != s) continue;
+            nextSessions = nextSessions.remove(seq);
+            rooms = unindex(rooms, roomKey(s), seq);
+            lecturers = unindex(lecturers, lecturerKey(s), seq);
+            modules = unindex(modules, moduleKey(s), seq);
+            groups = unindex(groups, groupKey(s), seq);
+            roomDays = unbook(roomDays, roomKey(s), seq, s);
+            lecturerDays = unbook(lecturerDays, lecturerKey(s), seq, s);
+            groupDays = unbook(groupDays, groupKey(s), seq, s);
+        }
+
+        long seq = nextSeq;
+        for (ScheduledSession s : added) {
+            nextSessions = nextSessions.put(seq, s);
+            rooms = index(rooms, roomKey(s), seq, s);
+            lecturers = index(lecturers, lecturerKey(s), seq, s);
+            modules = index(modules, moduleKey(s), seq, s);
+            groups = index(groups, groupKey(s), seq, s);
+            roomDays = book(roomDays, roomKey(s), seq, s);
+            lecturerDays = book(lecturerDays, lecturerKey(s), seq, s);
+            groupDays = book(groupDays, groupKey(s), seq, s);
+            seq++;
+        }
+
+        return new TimetableSnapshot(version + 1, loadVersion, seq, nextSessions,
+                rooms, lecturers, modules, groups, roomDays, lecturerDays, groupDays);
+    }
+
+    /**
+     * @return the version number, one higher for every change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the version at which the whole timetable was last loaded, kept by every
+     *         change made on top of it
+     */
+    public long getLoadVersion() {
+        return loadVersion;
+    }
+
+    /**
+     * @return every session in this version, read-only
+     */
+    public List<ScheduledSession> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * @param roomId the room ID
+     * @return the sessions held in the room, read-only
+     */
+    public List<ScheduledSession> getSessionsForRoom(String roomId) {
+        return slice(byRoom, lower(roomId));
+    }
+
+    /**
+     * @param lecturerId the lecturer's ID
+     * @return the sessions taught by the lecturer, read-only
+     */
+    public List<ScheduledSession> getSessionsForLecturer(String lecturerId) {
+        return slice(byLecturer, lower(lecturerId));
+    }
+
+    /**
+     * @param moduleCode the module code
+     * @return the sessions for the module, read-only
+     */
+    public List<ScheduledSession> getSessionsForModule(String moduleCode) {
+        return slice(byModule, lower(moduleCode));
+    }
+
+    /**
+     * @param groupId a named group e.g. "G1"
+     * @return the sessions for the group, read-only
+     */
+    public List<ScheduledSession> getSessionsForGroup(String groupId) {
+        return slice(byGroup, lower(groupId));
+    }
+
+    /**
+     * @param programmeId the programme ID
+     * @param year        the academic year
+     * @param semester    the semester number
+     * @return the "ALL" sessions for the programme year and semester, read-only
+     */
+    public List<ScheduledSession> getSessionsForCohort(String programmeId, int year, int semester) {
+        return slice(byGroup, cohortKey(programmeId, year, semester));
+    }
+
+    /**
+     * @param roomId the room ID
+     * @return the bookings of the room by day
+     */
+    public IntervalCalendar getRoomCalendar(String roomId) {
+        return calendar(roomCalendars, lower(roomId));
+    }
+
+    /**
+     * @param lecturerId the lecturer's ID
+     * @return the bookings of the lecturer by day
+     */
+    public IntervalCalendar getLecturerCalendar(String lecturerId) {
+        return calendar(lecturerCalendars, lower(lecturerId));
+    }
+
+    /**
+     * @param groupId a named group e.g. "G1"
+     * @return the bookings of the group by day
+     */
+    public IntervalCalendar getGroupCalendar(String groupId) {
+        return calendar(groupCalendars, lower(groupId));
+    }
+
+    /**
+     * @param programmeId the programme ID
+     * @param year        the academic year
+     * @param semester    the semester number
+     * @return the bookings of the whole class ("ALL") of the programme year and semester
+     */
+    public IntervalCalendar getCohortCalendar(String programmeId, int year, int semester) {
+        return calendar(groupCalendars, cohortKey(programmeId, year, semester));
+    }
+
+    /** The sessions in the same room as the given one that overlap it. */
+    List<ScheduledSession> overlappingInRoom(ScheduledSession s) {
+        return calendar(roomCalendars, roomKey(s)).overlapping(s.getTimeslot());
+    }
+
+    /** The sessions with the same lecturer as the given one that overlap it. */
+    List<ScheduledSession> overlappingForLecturer(ScheduledSession s) {
+        return calendar(lecturerCalendars, lecturerKey(s)).overlapping(s.getTimeslot());
+    }
+
+    /** The sessions for the same named group or cohort as the given one that overlap it. */
+    List<ScheduledSession> overlappingForGroup(ScheduledSession s) {
+        return calendar(groupCalendars, groupKey(s)).overlapping(s.getTimeslot());
+    }
+
+    /** The sessions in the same room as the given one. */
+    List<ScheduledSession> sameRoom(ScheduledSession s) {
+        return slice(byRoom, roomKey(s));
+    }
+
+    /** The sessions with the same lecturer as the given one. */
+    List<ScheduledSession> sameLecturer(ScheduledSession s) {
+        return slice(byLecturer, lecturerKey(s));
+    }
+
+    /**
+     * Finds the sequence number of a session from the smallest slice it would be in,
+     * so only that room's (or lecturer's, ...) sessions are checked.
+     */
+    private Long seqOf(ScheduledSession s) {
+        PersistentMap<Long, ScheduledSession> slice = smaller(bucket(byRoom, roomKey(s)), bucket(byLecturer, lecturerKey(s)));
+        slice = smaller(slice, smaller(bucket(byModule, moduleKey(s)), bucket(byGroup, groupKey(s))));
+        if (slice == null) slice = sessions; // a session with no room, lecturer, module or group
+        return slice.keyOf(s);
+    }
+
+    private static PersistentMap<Long, ScheduledSession> smaller(PersistentMap<Long, ScheduledSession> a,
+                                                                 PersistentMap<Long, ScheduledSession> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.size() <= b.size() ? a : b;
+    }
+
+    private static PersistentMap<Long, ScheduledSession> bucket(
+            PersistentMap<String, PersistentMap<Long, ScheduledSession>> index, String key) {
+        return key == null ? null : index.get(key);
+    }
+
+    private static PersistentMap<String, PersistentMap<Long, ScheduledSession>> index(
+            PersistentMap<String, PersistentMap<Long, ScheduledSession>> index, String key, long seq,
+            ScheduledSession s) {
+        if (key == null) return index;
+        PersistentMap<Long, ScheduledSession> slice = index.get(key);
+        if (slice == null) slice = PersistentMap.empty();
+        return index.put(key, slice.put(seq, s));
+    }
+
+    private static PersistentMap<String, PersistentMap<Long, ScheduledSession>> unindex(
+            PersistentMap<String, PersistentMap<Long, ScheduledSession>> index, String key, long seq) {
+        if (key == null) return index;
+        PersistentMap<Long, ScheduledSession> slice = index.get(key);
+        if (slice == null) return index;
+        slice = slice.remove(seq);
+        return slice.isEmpty() ? index.remove(key) : index.put(key, slice);
+    }
+
+    private static PersistentMap<String, IntervalCalendar> book(PersistentMap<String, IntervalCalendar> calendars,
+                                                                String key, long seq, ScheduledSession s) {
+        if (key == null) return calendars;
+        IntervalCalendar next = calendar(calendars, key).with(seq, s);
+        return next.isEmpty() ? calendars : calendars.put(key, next);
+    }
+
+    private static PersistentMap<String, IntervalCalendar> unbook(PersistentMap<String, IntervalCalendar> calendars,
+                                                                  String key, long seq, ScheduledSession s) {
+        if (key == null) return calendars;
+        IntervalCalendar next = calendar(calendars, key).without(seq, s);
+        return next.isEmpty() ? calendars.remove(key) : calendars.put(key, next);
+    }
+
+    private static IntervalCalendar calendar(PersistentMap<String, IntervalCalendar> calendars, String key) {
+        if (key == null) return IntervalCalendar.empty();
+        IntervalCalendar calendar = calendars.get(key);
+        return calendar == null ? IntervalCalendar.empty() : calendar;
+    }
+
+    private static List<ScheduledSession> slice(PersistentMap<String, PersistentMap<Long, ScheduledSession>> index,
+                                                String key) {
+        PersistentMap<Long, ScheduledSession> slice = bucket(index, key);
+        return slice == null ? List.of() : slice.values();
+    }
+
+    private static String roomKey(ScheduledSession s) {
+        return s.getRoom() == null ? null : lower(s.getRoom().getRoomId());
+    }
+
+    private static String lecturerKey(ScheduledSession s) {
+        return s.getLecturer() == null ? null : lower(s.getLecturer().getLecturerId());
+    }
+
+    private static String moduleKey(ScheduledSession s) {
+        return s.getModule() == null ? null : lower(s.getModule().getModuleCode());
+    }
+
+    /** Named groups are shared by every module, "ALL" belongs to one programme year and semester. */
+    private static String groupKey(ScheduledSession s) {
+        String groupId = s.getGroupId();
+        if (groupId != null && !groupId.equalsIgnoreCase("ALL")) return lower(groupId);
+        Module m = s.getModule();
+        if (m == null) return null;
+        return cohortKey(m.getProgrammeId(), m.getYear(), m.getSemester());
+    }
+
+    private static String cohortKey(String programmeId, int year, int semester) {
+        return "all/" + lower(programmeId) + "/" + year + "/" + semester;
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+}
@@ -1,11 +1,18 @@
 package View;
 
 import controllers.DataManager;
+import controllers.FreeSlot;
+import controllers.SessionCursor;
 import controllers.TimetableController;
 import Model.People.Student;
 import Model.People.Lecturer;
 import Model.People.Admin;
+import Model.Room.Room;
+import Model.Timetable.ScheduledSession;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -15,6 +22,8 @@ import java.util.Scanner;
  */
 public class UserInterface {
 
+    private static final int PAGE_SIZE = 20;
+
     private final Scanner scanner = new Scanner(System.in);
     private final TimetableController controller;
     private final DataManager datamanager;
@@ -78,7 +87,7 @@ public class UserInterface {
                     String semChoice = getInput();
                     int semester = semChoice.equals("2") ? 2 : 1;
 
-                    showTimetable(controller.getTimetableForStudent(s, semester));
+                    showSessions(controller.sessionsForStudent(s, semester), "No sessions found.", false);
                 }
 
 
@@ -86,15 +95,15 @@ public class UserInterface {
                     String programmeId = prompt("Enter programme ID (e.g. LM174)");
                     int year = Integer.parseInt(prompt("Enter year (e.g. 1–4)"));
                     int semester = Integer.parseInt(prompt("Enter semester (1=Autumn, 2=Spring)"));
-                    showTimetable(controller.getTimetableForCourseYear(programmeId, year, semester));
+                    showSessions(controller.sessionsForCourseYear(programmeId, year, semester), "No sessions found.", false);
                 }
                 case "3" -> {
                     String moduleCode = prompt("Enter module code (e.g. CS4013)");
-                    showTimetable(controller.getTimetableForModule(moduleCode));
+                    showSessions(controller.sessionsForModule(moduleCode), "No sessions found for module " + moduleCode, false);
                 }
                 case "4" -> {
                     String roomId = prompt("Enter room ID (e.g. CSG001)");
-                    showTimetable(controller.getTimetableForRoom(roomId));
+                    showSessions(controller.sessionsForRoom(roomId), "No sessions found for room " + roomId, false);
                 }
 
                 case "5" -> loggedIn = false;
@@ -120,23 +129,23 @@ public class UserInterface {
 
             switch (choice) {
                 case "1" -> {
-                    showTimetable(controller.getTimetableForLecturer(l));
+                    showSessions(controller.sessionsForLecturer(l), "No sessions found.", false);
                 }
                  case "2" -> {
                     String programmeId = prompt("Enter programme ID (e.g. LM174)");
                     int year = Integer.parseInt(prompt("Enter year (e.g. 1–4)"));
                     int semester = Integer.parseInt(prompt("Enter semester (1=Autumn, 2=Spring)"));
-                    showTimetable(controller.getTimetableForCourseYear(programmeId, year, semester));
+                    showSessions(controller.sessionsForCourseYear(programmeId, year, semester), "No sessions found.", false);
                 }
 
                 case "3" -> {
                     String moduleCode = prompt("Enter module code (e.g. CS4013)");
-                    showTimetable(controller.getTimetableForModule(moduleCode));
+                    showSessions(controller.sessionsForModule(moduleCode), "No sessions found for module " + moduleCode, false);
                 }
 
                 case "4" -> {
                     String roomId = prompt("Enter room ID (e.g. CSG001)");
-                    showTimetable(controller.getTimetableForRoom(roomId));
+                    showSessions(controller.sessionsForRoom(roomId), "No sessions found for room " + roomId, false);
                 }
                 case "5" -> loggedIn = false;
                 default -> showMessage("Invalid choice.");
@@ -153,39 +162,43 @@ public class UserInterface {
             System.out.println("2. View course/year timetable");
             System.out.println("3. View module timetable");
             System.out.println("4. View room timetable");
-            System.out.println("5. List sessions (with index)");
+            System.out.println("5. List sessions (with IDs)");
             System.out.println("6. Add session");
             System.out.println("7. Remove session");
             System.out.println("8. Update session");
             System.out.println("9. Add User");
             System.out.println("10. Remove User");
-            System.out.println("11. Logout");
+            System.out.println("11. Find free room");
+            System.out.println("12. Find common free time");
+            System.out.println("13. Logout");
             System.out.print("Choose an option: ");
             String choice = getInput();
 
             switch (choice) {
-                case "1" -> showTimetable(controller.getFullTimetable());
+                case "1" -> showSessions(controller.allSessions(), "No sessions found.", false);
                 case "2" -> {
                     String programmeId = prompt("Enter programme ID");
                     int year = Integer.parseInt(prompt("Enter year (1-4)"));
                     int semester = Integer.parseInt(prompt("Enter semester (1-Autumn, 2-Spring)"));
-                    showTimetable(controller.getTimetableForCourseYear(programmeId, year, semester));
+                    showSessions(controller.sessionsForCourseYear(programmeId, year, semester), "No sessions found.", false);
                 }
                 case "3" -> {
                     String moduleCode = prompt("Enter module code");
-                    showTimetable(controller.getTimetableForModule(moduleCode));
+                    showSessions(controller.sessionsForModule(moduleCode), "No sessions found for module " + moduleCode, false);
                 }
                 case "4" -> {
                     String roomId = prompt("Enter room ID");
-                    showTimetable(controller.getTimetableForRoom(roomId));
+                    showSessions(controller.sessionsForRoom(roomId), "No sessions found for room " + roomId, false);
                 }
-                case "5" -> showTimetable(controller.listSessionsWithIndex());
+                case "5" -> showSessions(controller.storedSessions(), "No sessions found.", true);
                 case "6" -> addSession();
                 case "7" -> removeSession();
                 case "8" -> updateSession();
                 case "9" -> addUser();
                 case "10" -> removeUser();
-                case "11" -> loggedIn = false;
+                case "11" -> findFreeRoom();
+                case "12" -> findCommonFreeTime();
+                case "13" -> loggedIn = false;
                 default -> showMessage("Invalid choice.");
             }
         }
@@ -203,7 +216,10 @@ public class UserInterface {
             String programme = prompt("Programme");
             int year = Integer.parseInt(prompt("Year"));
             String groupId = prompt("Group");
-            datamanager.students.add(new Model.People.Student(id, name, email, password, programme, year, groupId));
+            if (!datamanager.addUser(new Model.People.Student(id, name, email, password, programme, year, groupId))) {
+                showMessage("A user with that email already exists.");
+                return;
+            }
             showMessage("Student added.");
             datamanager.saveStudents("OOD-Group19-Real/data/students.csv");
         } else if (type.equals("lecturer")) {
@@ -212,7 +228,10 @@ public class UserInterface {
             String email = prompt("Email");
             String password = prompt("Password");
             String dept = prompt("Department");
-            datamanager.lecturers.add(new Model.People.Lecturer(id, name, email, password, dept));
+            if (!datamanager.addUser(new Model.People.Lecturer(id, name, email, password, dept))) {
+                showMessage("A user with that email already exists.");
+                return;
+            }
             showMessage("Lecturer added.");
             datamanager.saveLecturers("OOD-Group19-Real/data/lecturers.csv");
         } else if (type.equals("admin")) {
@@ -220,7 +239,10 @@ public class UserInterface {
             String name = prompt("Name");
             String email = prompt("Email");
             String password = prompt("Password");
-            datamanager.admins.add(new Model.People.Admin(id, name, email, password));
+            if (!datamanager.addUser(new Model.People.Admin(id, name, email, password))) {
+                showMessage("A user with that email already exists.");
+                return;
+            }
             showMessage("Admin added.");
             datamanager.saveAdmins("OOD-Group19-Real/data/admins.csv");
         } else {
@@ -232,9 +254,7 @@ public class UserInterface {
         showMessage("Remove user - enter email");
         String email = getInput().trim();
 
-        boolean removed = datamanager.students.removeIf(s -> s.getEmail().equalsIgnoreCase(email));
-        removed = datamanager.lecturers.removeIf(l -> l.getEmail().equalsIgnoreCase(email)) || removed;
-        removed = datamanager.admins.removeIf(a -> a.getEmail().equalsIgnoreCase(email)) || removed;
+        boolean removed = datamanager.removeUser(email);
 
         if (removed){
             datamanager.saveStudents("OOD-Group19-Real/data/students.csv");
@@ -268,6 +288,34 @@ public class UserInterface {
         System.out.println("     Timetable     ");
         System.out.println(timetable);
  }
+
+ /**
+  * Prints sessions a page at a time, asking before each further page.
+  *
+  * @param sessions     the sessions to show
+  * @param emptyMessage what to print when there are none
+  * @param withIds     true to show each session's ID
+  */
+ public void showSessions(List<ScheduledSession> sessions, String emptyMessage, boolean withIds) {
+        System.out.println("     Timetable     ");
+        if (sessions.isEmpty()) {
+            System.out.println(emptyMessage);
+            return;
+        }
+        SessionCursor cursor = controller.cursor(sessions, withIds);
+        try {
+            while (true) {
+                cursor.nextPage(System.out, PAGE_SIZE);
+                if (!cursor.hasNext()) break;
+                String more = prompt("Showing " + cursor.getPosition() + " of " + cursor.size()
+                        + " - press Enter for more, or q to stop");
+                if (more.trim().equalsIgnoreCase("q")) break;
+            }
+        } catch (IOException e) {
+            showMessage("Could not show timetable: " + e.getMessage());
+        }
+        System.out.println();
+ }
  private void addSession() {
         showMessage("Add new session:");
         String moduleCode = prompt("Module code");
@@ -281,22 +329,79 @@ public class UserInterface {
         boolean success = controller.addSessionAdmin(moduleCode, day, start, end, roomId, lecturerId, groupId);
         if (success) {
             showMessage("Session added successfully.");
-            datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv");
+            datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv", controller.storedSessions());
         } else {
             showMessage("Session could not be added.");
         }
  }
 
+ private void findFreeRoom() {
+        showMessage("Find free room:");
+        try {
+            String day = prompt("Day");
+            int start = Integer.parseInt(prompt("Start hour"));
+            int end = Integer.parseInt(prompt("End hour"));
+            boolean lab = prompt("Lab? (y/n)").trim().equalsIgnoreCase("y");
+            int capacity = Integer.parseInt(prompt("Minimum capacity"));
+
+            List<Room> rooms = controller.findFreeRooms(day, start, end, lab, capacity);
+            if (rooms.isEmpty()) {
+                showMessage("No free rooms found.");
+            }
+            for (Room room : rooms) {
+                showMessage(room.getRoomId() + "   " + room.getCapacity() + " seats   " + room.getBuilding());
+            }
+        } catch (NumberFormatException e) {
+            showMessage("Invalid number.");
+        }
+ }
+
+ private void findCommonFreeTime() {
+        showMessage("Find common free time - separate IDs with commas, leave blank for none");
+        try {
+            List<Lecturer> lecturers = new ArrayList<>();
+            for (String id : splitIds(prompt("Lecturer IDs"))) {
+                Lecturer l = datamanager.findLecturer(id);
+                if (l == null) showMessage("Unknown lecturer " + id);
+                else lecturers.add(l);
+            }
+            List<String> groups = splitIds(prompt("Group IDs"));
+            int groupYear = groups.isEmpty() ? 0 : Integer.parseInt(prompt("Year of the groups (1-4)"));
+            List<Student> students = new ArrayList<>();
+            for (String id : splitIds(prompt("Student IDs"))) {
+                Student s = datamanager.findStudent(id);
+                if (s == null) showMessage("Unknown student " + id);
+                else students.add(s);
+            }
+            int semester = Integer.parseInt(prompt("Semester (1-Autumn, 2-Spring)"));
+            int hours = Integer.parseInt(prompt("Length in hours"));
+
+            for (FreeSlot slot : controller.findCommonFreeSlots(lecturers, groupYear, groups, students, semester, hours, 10)) {
+                showMessage(slot.toString());
+            }
+        } catch (NumberFormatException e) {
+            showMessage("Invalid number.");
+        }
+ }
+
+ private List<String> splitIds(String input) {
+        List<String> ids = new ArrayList<>();
+        for (String id : input.split(",")) {
+            if (!id.trim().isEmpty()) ids.add(id.trim());
+        }
+        return ids;
+ }
+
  private void removeSession() {
-        showMessage("Remove session - enter index (see list sessions)");
+        showMessage("Remove session - enter session ID (see list sessions)");
         try {
-            int idx = Integer.parseInt(getInput().trim());
-            boolean ok = controller.removeSessionByIndex(idx);
+            int id = Integer.parseInt(getInput().trim());
+            boolean ok = controller.removeSessionById(id);
             if (ok) {
-                datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv");
+                datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv", controller.storedSessions());
                 showMessage("Session removed.");
             } else {
-                showMessage("Invalid index.");
+                showMessage("No session with that ID.");
             }
         } catch (NumberFormatException e) {
             showMessage("Invalid number.");
@@ -304,9 +409,9 @@ public class UserInterface {
  }
 
  private void updateSession() {
-        showMessage("Update session - enter index (see list sessions)");
+        showMessage("Update session - enter session ID (see list sessions)");
         try {
-            int idx = Integer.parseInt(getInput().trim());
+            int id = Integer.parseInt(getInput().trim());
             String moduleCode = prompt("Module code");
             String day = prompt("Day");
             int start = Integer.parseInt(prompt("Start hour"));
@@ -315,9 +420,9 @@ public class UserInterface {
             String lecturerId = prompt("Lecturer ID");
             String groupId = prompt("Group ID");
 
-            boolean ok = controller.updateSessionByIndex(idx, moduleCode, day, start, end, roomId, lecturerId, groupId);
+            boolean ok = controller.updateSessionById(id, moduleCode, day, start, end, roomId, lecturerId, groupId);
             if (ok) {
-                datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv");
+                datamanager.saveSessions("OOD-Group19-Real/data/sessions.csv", controller.storedSessions());
                 showMessage("Session updated.");
             } else {
                 showMessage("Could not update session (conflict or bad data).");
@@ -0,0 +1,236 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+import Model.People.Student;
+import Model.Room.Room;
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.Timeslot;
+import Model.Timetable.TimetableSnapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a busy bitmap of the teaching week for every room and lecturer, with the
+ * same bit layout as OccupancyGrid (one bit per day and hour), so checking whether
+ * someone is free for a range of hours is a single AND.
+ *
+ * The bitmaps are built once from a timetable snapshot. After that only the rooms
+ * and lecturers used by a changed session are worked out again, from their sessions
+ * in the newest snapshot. Loading a new timetable rebuilds everything.
+ *
+ * Groups and students share one bitmap per year, semester and group, covering the
+ * same sessions the student view shows (see StudentTimetableCache), so a group name
+ * like G1 only blocks the hours of that year and semester. These are built the first
+ * time they are asked for and, like the cache, only dropped when a change touches
+ * that group, or every group of the year and semester for an "ALL" session.
+ */
+public class AvailabilityIndex {
+
+    private final Map<String, Busy> rooms = new HashMap<>();
+    private final Map<String, Busy> lecturers = new HashMap<>();
+    private final Map<String, Busy> groups = new HashMap<>();
+    private long loadVersion = -1;
+    private long changeVersion = -1;
+
+    /**
+     * Picks the rooms that have none of the wanted hours booked.
+     *
+     * @param snapshot   the current timetable
+     * @param candidates the rooms to check, e.g. from RoomIndex.roomsWithCapacity
+     * @param wanted     the hours needed, as an OccupancyGrid mask
+     * @return the free rooms, in the same order as the candidates
+     */
+    public synchronized List<Room> freeRooms(TimetableSnapshot snapshot, List<Room> candidates, long wanted) {
+        refresh(snapshot);
+        List<Room> free = new ArrayList<>();
+        for (Room room : candidates) {
+            if ((mask(rooms, key(room.getRoomId())) & wanted) == 0) free.add(room);
+        }
+        return free;
+    }
+
+    /**
+     * Gets the busy bitmap of each participant.
+     *
+     * @param snapshot  the current timetable
+     * @param lecturers the lecturers taking part
+     * @param groupYear the year of the groups
+     * @param groupIds  the named groups of that year taking part, e.g. "G1"
+     * @param students  the students taking part
+     * @param semester  the semester to plan in
+     * @return one OccupancyGrid mask per participant: lecturers, then groups, then students
+     */
+    public synchronized long[] busy(TimetableSnapshot snapshot, List<Lecturer> lecturers, int groupYear,
+                                    List<String> groupIds, List<Student> students, int semester) {
+        refresh(snapshot);
+        long[] result = new long[lecturers.size() + groupIds.size() + students.size()];
+        int i = 0;
+        for (Lecturer l : lecturers) {
+            result[i++] = mask(this.lecturers, key(l.getLecturerId()));
+        }
+        for (String groupId : groupIds) {
+            result[i++] = groupMask(snapshot, groupYear, semester, groupId);
+        }
+        for (Student s : students) {
+            result[i++] = groupMask(snapshot, s.getYear(), semester, s.getGroupId());
+        }
+        return result;
+    }
+
+    /**
+     * @param sessions the sessions someone attends
+     * @return the hours they cover, as an OccupancyGrid mask
+     */
+    public static long mask(List<ScheduledSession> sessions) {
+        long mask = 0L;
+        for (ScheduledSession s : sessions) {
+            mask |= OccupancyGrid.mask(s.getTimeslot());
+        }
+        return mask;
+    }
+
+    /**
+     * Works out the bitmaps touched by a session again. Call this after the session
+     * is added, removed or replaced.
+     *
+     * @param snapshot the timetable after the change
+     * @param session  the session that changed
+     */
+    public synchronized void update(TimetableSnapshot snapshot, ScheduledSession session) {
+        long version = snapshot.getVersion();
+        changeVersion = Math.max(changeVersion, version);
+        if (refresh(snapshot)) return;
+        dropGroups(session);
+        if (session.getRoom() != null) {
+            String roomId = session.getRoom().getRoomId();
+            recompute(rooms, key(roomId), snapshot.getSessionsForRoom(roomId), version);
+        }
+        if (session.getLecturer() != null) {
+            String lecturerId = session.getLecturer().getLecturerId();
+            recompute(lecturers, key(lecturerId), snapshot.getSessionsForLecturer(lecturerId), version);
+        }
+    }
+
+    /**
+     * Ranks every start time in the teaching week for a meeting of the given length,
+     * fewest busy participants first and then in week order.
+     *
+     * @param busy  the participants' busy bitmaps, from busy()
+     * @param hours how long the meeting is
+     * @return the possible slots, best first
+     */
+    public static List<FreeSlot> rank(long[] busy, int hours) {
+        List<FreeSlot> slots = new ArrayList<>();
+        if (hours < 1 || hours > OccupancyGrid.HOURS_PER_DAY) return slots;
+
+        for (int day = 0; day < OccupancyGrid.DAYS.length; day++) {
+            for (int hour = OccupancyGrid.START_HOUR; hour + hours <= OccupancyGrid.END_HOUR; hour++) {
+                Timeslot slot = new Timeslot(OccupancyGrid.DAYS[day], hour, hours);
+                long wanted = OccupancyGrid.mask(slot);
+                int clashes = 0;
+                for (long mask : busy) {
+                    if ((mask & wanted) != 0) clashes++;
+                }
+                slots.add(new FreeSlot(slot, clashes));
+            }
+        }
+        slots.sort(Comparator.comparingInt(FreeSlot::getClashes)); // stable, so week order is kept
+        return slots;
+    }
+
+    /** Rebuilds every bitmap if a different timetable has been loaded since the last call. */
+    private boolean refresh(TimetableSnapshot snapshot) {
+        if (snapshot.getLoadVersion() == loadVersion) return false;
+        rooms.clear();
+        lecturers.clear();
+        groups.clear();
+        long version = snapshot.getVersion();
+        for (ScheduledSession s : snapshot.getSessions()) {
+            long mask = OccupancyGrid.mask(s.getTimeslot());
+            if (s.getRoom() != null) book(rooms, key(s.getRoom().getRoomId()), mask, version);
+            if (s.getLecturer() != null) book(lecturers, key(s.getLecturer().getLecturerId()), mask, version);
+        }
+        loadVersion = snapshot.getLoadVersion();
+        return true;
+    }
+
+    /**
+     * Gets the bitmap of a year, semester and group, working it out from the snapshot
+     * the first time. A snapshot from before the latest change is not stored, as the
+     * change may already have dropped the group.
+     */
+    private long groupMask(TimetableSnapshot snapshot, int year, int semester, String groupId) {
+        String key = StudentTimetableCache.key(year, semester, groupId);
+        Busy busy = groups.get(key);
+        if (busy != null) return busy.mask;
+
+        long mask = 0L;
+        for (ScheduledSession s : snapshot.getSessions()) {
+            if (StudentTimetableCache.attends(s, year, semester, groupId)) {
+                mask |= OccupancyGrid.mask(s.getTimeslot());
+            }
+        }
+        if (snapshot.getVersion() >= changeVersion) {
+            groups.put(key, new Busy(mask, snapshot.getVersion()));
+        }
+        return mask;
+    }
+
+    /** Drops the groups a session belongs to, in the same way as StudentTimetableCache.invalidate. */
+    private void dropGroups(ScheduledSession session) {
+        Module m = session.getModule();
+        if (m == null || session.getGroupId() == null) {
+            groups.clear();
+        } else if (session.getGroupId().equalsIgnoreCase("ALL")) {
+            String prefix = m.getYear() + "/" + m.getSemester() + "/";
+            groups.keySet().removeIf(key -> key.startsWith(prefix));
+        } else {
+            groups.remove(StudentTimetableCache.key(m.getYear(), m.getSemester(), session.getGroupId()));
+        }
+    }
+
+    private static void book(Map<String, Busy> bitmaps, String key, long mask, long version) {
+        if (key == null) return;
+        bitmaps.computeIfAbsent(key, k -> new Busy(0L, version)).mask |= mask;
+    }
+
+    /**
+     * Sets one bitmap from the resource's sessions. A snapshot older than the one the
+     * bitmap was last built from is ignored, so changes finishing out of order are safe.
+     */
+    private static void recompute(Map<String, Busy> bitmaps, String key, List<ScheduledSession> sessions,
+                                  long version) {
+        if (key == null) return;
+        Busy busy = bitmaps.get(key);
+        if (busy != null && busy.version > version) return;
+
+        bitmaps.put(key, new Busy(mask(sessions), version));
+    }
+
+    private static long mask(Map<String, Busy> bitmaps, String key) {
+        if (key == null) return 0L;
+        Busy busy = bitmaps.get(key);
+        return busy == null ? 0L : busy.mask;
+    }
+
+    private static String key(String id) {
+        return id == null ? null : id.toLowerCase();
+    }
+
+    /** The booked hours of one resource and the snapshot version they were read from. */
+    private static class Busy {
+
+        long mask;
+        final long version;
+
+        Busy(long mask, long version) {
+            this.mask = mask;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+import Model.Room.Room;
+import Model.Timetable.ScheduledSession;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A timetable solver that places the most constrained teaching hour first.
+ *
+ * Every one hour session that has to be placed is a "unit". The domain of a unit is the
+ * set of week slots where its lecturer and group are free and at least one suitable room
+ * is free, stored as a bitset like in OccupancyGrid. The solver:
+ * - always picks the unit with the fewest slots left (DSATUR ordering)
+ * - after each placement checks that no unit sharing the lecturer, group or rooms
+ *   has been left with an empty domain (forward checking)
+ * - undoes earlier placements when it gets stuck, up to a fixed number of backtracks
+ *
+ * Once the backtrack budget is used up, units with no slots left are reported as
+ * unplaced and the rest are placed without further backtracking.
+ *
+ * The hours of one request always share a domain, so domains are kept per request
+ * ("kind"), with the kinds filed in buckets by domain size and by the slots they can
+ * still use. Booking or freeing a slot only updates the kinds sharing the lecturer,
+ * group or a room class whose domain really gains or loses that slot, and keeps a
+ * count of empty domains per lecturer, group and room class. Picking the next unit
+ * then reads the smallest non-empty bucket and forward checking reads three counts,
+ * instead of both walking every unit.
+ */
+public class BacktrackingSolver {
+
+    private static final long ALL_SLOTS = (1L << OccupancyGrid.SLOTS) - 1;
+
+    private final List<Room> rooms;
+    private final int backtrackLimit;
+
+    /**
+     * Creates a solver for the given rooms.
+     *
+     * @param rooms          the rooms that sessions can be placed in
+     * @param backtrackLimit the most placements that may be undone in one solve
+     */
+    public BacktrackingSolver(List<Room> rooms, int backtrackLimit) {
+        this.rooms = rooms;
+        this.backtrackLimit = backtrackLimit;
+    }
+
+    /**
+     * Places every requested hour.
+     *
+     * @param requests the hours to place
+     * @param seed     the seed used to break ties between equally good slots
+     * @return the placed sessions and the hours that could not be placed
+     */
+    public GenerationResult solve(List<PlacementRequest> requests, long seed) {
+        return new Search(requests, seed).run();
+    }
+
+    /** A placement on the search stack, with the slots it has not tried yet. */
+    private static class Frame {
+        final int unit;
+        long untried;
+
+        Frame(int unit, long untried) {
+            this.unit = unit;
+            this.untried = untried;
+        }
+    }
+
+    /** The state of one solve. */
+    private class Search {
+
+        private final Random random;
+        private final long seed;
+        private final List<String> failures = new ArrayList<>();
+        private int unplacedHours;
+        private long evaluations;
+        private int backtracks;
+
+        // unit data
+        private final List<PlacementRequest> unitRequest = new ArrayList<>();
+        private int[] unitKind;
+        private int[] unitSlot;
+        private int[] unitRoom;
+        private boolean[] skipped;
+
+        // kind data: one kind per request, whose hours are the units first..end-1 and share a domain
+        private int[] kindLecturer;
+        private int[] kindGroup;
+        private int[] kindClass;
+        private int[] kindFirst;
+        private int[] kindEnd;
+        private int[] kindLeft;
+        private long[] kindDomain;
+        // sets of kinds are bitsets of kind numbers stored in long words
+        private long[][] kindsBySize;
+        private int[] sizeCount;
+        private long[][] kindsWithSlot;
+        private long[] pending;
+        private long[] touched;
+
+        // resource data
+        private long[] lecturerBusy;
+        private long[] groupBusy;
+        private long[] roomBusy;
+        private final List<int[]> classRooms = new ArrayList<>();
+        private long[] classFree;
+        private List<List<Integer>> roomClasses;
+        private long[][] kindsOfLecturer;
+        private long[][] kindsOfGroup;
+        private long[][] kindsOfClass;
+        private int[] emptyByLecturer;
+        private int[] emptyByGroup;
+        private int[] emptyByClass;
+
+        private final Deque<Frame> stack = new ArrayDeque<>();
+
+        Search(List<PlacementRequest> requests, long seed) {
+            this.seed = seed;
+            this.random = new Random(seed);
+            index(requests);
+        }
+
+        /** Gives every lecturer, group, room class, kind and unit a number. */
+        private void index(List<PlacementRequest> requests) {
+            Map<Lecturer, Integer> lecturerIds = new HashMap<>();
+            Map<String, Integer> groupIds = new HashMap<>();
+            Map<String, Integer> classIds = new HashMap<>();
+            List<int[]> kinds = new ArrayList<>();
+            List<Integer> units = new ArrayList<>();
+
+            for (PlacementRequest request : requests) {
+                if (request.getLecturer() == null) {
+                    failures.add(request.failureMessage());
+                    unplacedHours += request.getHours();
+                    continue;
+                }
+
+                int lecturer = lecturerIds.computeIfAbsent(request.getLecturer(), k -> lecturerIds.size());
+                int group = groupIds.computeIfAbsent(groupKey(request), k -> groupIds.size());
+                String classKey = request.isLab() + "/" + request.requiredCapacity();
+                int roomClass = classIds.computeIfAbsent(classKey, k -> {
+                    classRooms.add(suitableRooms(request.isLab(), request.requiredCapacity()));
+                    return classIds.size();
+                });
+
+                int first = unitRequest.size();
+                for (int h = 0; h < request.getHours(); h++) {
+                    unitRequest.add(request);
+                    units.add(kinds.size());
+                }
+                kinds.add(new int[] {lecturer, group, roomClass, first, unitRequest.size()});
+            }
+
+            int unitCount = unitRequest.size();
+            unitKind = units.stream().mapToInt(Integer::intValue).toArray();
+            unitSlot = new int[unitCount];
+            unitRoom = new int[unitCount];
+            skipped = new boolean[unitCount];
+            Arrays.fill(unitSlot, -1);
+
+            lecturerBusy = new long[lecturerIds.size()];
+            groupBusy = new long[groupIds.size()];
+            roomBusy = new long[rooms.size()];
+            classFree = new long[classRooms.size()];
+
+            roomClasses = newLists(rooms.size());
+            for (int c = 0; c < classRooms.size(); c++) {
+                for (int r : classRooms.get(c)) roomClasses.get(r).add(c);
+                refreshClass(c);
+            }
+
+            int kindCount = kinds.size();
+            kindLecturer = new int[kindCount];
+            kindGroup = new int[kindCount];
+            kindClass = new int[kindCount];
+            kindFirst = new int[kindCount];
+            kindEnd = new int[kindCount];
+            kindLeft = new int[kindCount];
+            kindDomain = new long[kindCount];
+            int words = (kindCount + 63) >>> 6;
+            kindsBySize = new long[OccupancyGrid.SLOTS + 1][words];
+            sizeCount = new int[OccupancyGrid.SLOTS + 1];
+            kindsWithSlot = new long[OccupancyGrid.SLOTS][words];
+            pending = new long[words];
+            touched = new long[words];
+            kindsOfLecturer = new long[lecturerBusy.length][words];
+            kindsOfGroup = new long[groupBusy.length][words];
+            kindsOfClass = new long[classFree.length][words];
+            emptyByLecturer = new int[lecturerBusy.length];
+            emptyByGroup = new int[groupBusy.length];
+            emptyByClass = new int[classFree.length];
+            for (int k = 0; k < kindCount; k++) {
+                int[] kind = kinds.get(k);
+                kindLecturer[k] = kind[0];
+                kindGroup[k] = kind[1];
+                kindClass[k] = kind[2];
+                kindFirst[k] = kind[3];
+                kindEnd[k] = kind[4];
+                set(kindsOfLecturer[kind[0]], k);
+                set(kindsOfGroup[kind[1]], k);
+                set(kindsOfClass[kind[2]], k);
+                setLeft(k, kind[4] - kind[3]);
+            }
+        }
+
+        GenerationResult run() {
+            while (true) {
+                int unit = mostConstrainedUnit();
+                if (unit < 0) break;
+
+                long domain = kindDomain[unitKind[unit]];
+                if (domain == 0) {
+                    if (backtrack()) continue;
+                    domain = kindDomain[unitKind[unit]];
+                    if (domain == 0) {
+                        skip(unit);
+                        continue;
+                    }
+                }
+
+                Frame frame = new Frame(unit, domain);
+                stack.push(frame);
+                if (!advance(frame)) {
+                    // every slot leaves another unit with nothing, take the first one anyway
+                    place(unit, Long.numberOfTrailingZeros(domain));
+                    frame.untried = 0;
+                }
+            }
+            return toResult();
+        }
+
+        /**
+         * Picks the unplaced unit with the fewest possible slots, from the smallest
+         * non-empty size bucket. Ties go to the unit that came first so module order
+         * is still respected.
+         */
+        private int mostConstrainedUnit() {
+            for (int size = 0; size < kindsBySize.length; size++) {
+                if (sizeCount[size] == 0) continue;
+                int kind = first(kindsBySize[size]);
+                for (int u = kindFirst[kind]; u < kindEnd[kind]; u++) {
+                    if (unitSlot[u] < 0 && !skipped[u]) return u;
+                }
+            }
+            return -1;
+        }
+
+        /** Tries the remaining slots of a frame until one passes forward checking. */
+        private boolean advance(Frame frame) {
+            while (frame.untried != 0) {
+                int slot = pickSlot(frame.untried);
+                frame.untried &= ~(1L << slot);
+
+                evaluations++;
+                if ((kindDomain[unitKind[frame.unit]] & (1L << slot)) == 0) continue;
+                place(frame.unit, slot);
+                if (forwardCheck(frame.unit)) return true;
+                unplace(frame.unit);
+            }
+            return false;
+        }
+
+        /**
+         * Undoes placements from the top of the stack until one of them can be moved
+         * to another slot, or the backtrack budget runs out.
+         */
+        private boolean backtrack() {
+            while (!stack.isEmpty() && backtracks < backtrackLimit) {
+                Frame frame = stack.peek();
+                unplace(frame.unit);
+                backtracks++;
+                if (advance(frame)) return true;
+                stack.pop();
+            }
+            return false;
+        }
+
+        /**
+         * Checks that every unit sharing the lecturer, group or a room class with the
+         * placed unit still has a slot, using the count of empty domains kept for each.
+         */
+        private boolean forwardCheck(int unit) {
+            int kind = unitKind[unit];
+            if (emptyByLecturer[kindLecturer[kind]] > 0 || emptyByGroup[kindGroup[kind]] > 0) return false;
+            for (int c : roomClasses.get(unitRoom[unit])) {
+                if (emptyByClass[c] > 0) return false;
+            }
+            return true;
+        }
+
+        /** The slots where the kind's lecturer, group and at least one suitable room are free. */
+        private long domain(int kind) {
+            evaluations++;
+            return ~(lecturerBusy[kindLecturer[kind]] | groupBusy[kindGroup[kind]])
+                    & classFree[kindClass[kind]];
+        }
+
+        /** Picks a random slot out of the given set. */
+        private int pickSlot(long slots) {
+            int n = random.nextInt(Long.bitCount(slots));
+            for (int i = 0; i < n; i++) {
+                slots &= slots - 1;
+            }
+            return Long.numberOfTrailingZeros(slots);
+        }
+
+        /** Books the unit into the smallest suitable room free at the slot. */
+        private void place(int unit, int slot) {
+            long bit = 1L << slot;
+            int room = -1;
+            for (int r : classRooms.get(kindClass[unitKind[unit]])) {
+                evaluations++;
+                if ((roomBusy[r] & bit) == 0) {
+                    room = r;
+                    break;
+                }
+            }
+
+            int kind = unitKind[unit];
+            unitSlot[unit] = slot;
+            unitRoom[unit] = room;
+            setLeft(kind, kindLeft[kind] - 1);
+            lecturerBusy[kindLecturer[kind]] |= bit;
+            groupBusy[kindGroup[kind]] |= bit;
+            roomBusy[room] |= bit;
+
+            // everything sharing the lecturer or group, or a room class that is now full, loses the slot
+            sharing(kind, room);
+            long[] withSlot = kindsWithSlot[slot];
+            for (int w = 0; w < touched.length; w++) {
+                for (long word = touched[w] & withSlot[w] & pending[w]; word != 0; word &= word - 1) {
+                    int k = (w << 6) + Long.numberOfTrailingZeros(word);
+                    evaluations++;
+                    setDomain(k, kindDomain[k] & ~bit);
+                }
+            }
+        }
+
+        private void unplace(int unit) {
+            int kind = unitKind[unit];
+            int slot = unitSlot[unit];
+            long bit = 1L << slot;
+            int room = unitRoom[unit];
+
+            lecturerBusy[kindLecturer[kind]] &= ~bit;
+            groupBusy[kindGroup[kind]] &= ~bit;
+            roomBusy[room] &= ~bit;
+            unitSlot[unit] = -1;
+            unitRoom[unit] = -1;
+            setLeft(kind, kindLeft[kind] + 1);
+
+            // only kinds sharing a freed resource can get the slot back, if nothing else blocks it
+            sharing(kind, room);
+            long[] withSlot = kindsWithSlot[slot];
+            for (int w = 0; w < touched.length; w++) {
+                for (long word = touched[w] & ~withSlot[w] & pending[w]; word != 0; word &= word - 1) {
+                    int k = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if ((domain(k) & bit) != 0) setDomain(k, kindDomain[k] | bit);
+                }
+            }
+        }
+
+        /**
+         * Fills "touched" with the kinds sharing the lecturer or group of a kind that was just
+         * booked or freed, and the kinds of any room class of the room whose free slots changed.
+         */
+        private void sharing(int kind, int room) {
+            long[] lecturer = kindsOfLecturer[kindLecturer[kind]];
+            long[] group = kindsOfGroup[kindGroup[kind]];
+            for (int w = 0; w < touched.length; w++) touched[w] = lecturer[w] | group[w];
+            for (int c : roomClasses.get(room)) {
+                if (!refreshClass(c)) continue;
+                long[] roomClass = kindsOfClass[c];
+                for (int w = 0; w < touched.length; w++) touched[w] |= roomClass[w];
+            }
+        }
+
+        private void skip(int unit) {
+            skipped[unit] = true;
+            setLeft(unitKind[unit], kindLeft[unitKind[unit]] - 1);
+            unplacedHours++;
+            String message = unitRequest.get(unit).failureMessage();
+            if (failures.isEmpty() || !failures.get(failures.size() - 1).equals(message)) {
+                failures.add(message);
+            }
+        }
+
+        /** Changes a kind's domain, keeping its size bucket and the slot index up to date. */
+        private void setDomain(int kind, long domain) {
+            if (domain == kindDomain[kind]) return;
+            leave(kind);
+            for (long changed = domain ^ kindDomain[kind]; changed != 0; changed &= changed - 1) {
+                flip(kindsWithSlot[Long.numberOfTrailingZeros(changed)], kind);
+            }
+            kindDomain[kind] = domain;
+            enter(kind);
+        }
+
+        /**
+         * Sets how many of a kind's units are still to be placed. Only those kinds are kept
+         * up to date, so a kind that had none works out its domain again first.
+         */
+        private void setLeft(int kind, int left) {
+            if (kindLeft[kind] == 0 && left > 0) {
+                set(pending, kind);
+                kindLeft[kind] = left;
+                kindDomain[kind] = refreshedDomain(kind);
+                enter(kind);
+                return;
+            }
+            leave(kind);
+            kindLeft[kind] = left;
+            if (left == 0) clear(pending, kind);
+            enter(kind);
+        }
+
+        /** Works out a kind's domain from scratch and moves it in the slot index. */
+        private long refreshedDomain(int kind) {
+            long domain = domain(kind);
+            for (long changed = domain ^ kindDomain[kind]; changed != 0; changed &= changed - 1) {
+                flip(kindsWithSlot[Long.numberOfTrailingZeros(changed)], kind);
+            }
+            return domain;
+        }
+
+        /** Takes a kind out of its size bucket and the empty domain counts before it changes. */
+        private void leave(int kind) {
+            if (kindLeft[kind] == 0) return;
+            int size = Long.bitCount(kindDomain[kind]);
+            clear(kindsBySize[size], kind);
+            sizeCount[size]--;
+            if (size == 0) countEmpty(kind, -1);
+        }
+
+        private void enter(int kind) {
+            if (kindLeft[kind] == 0) return;
+            int size = Long.bitCount(kindDomain[kind]);
+            set(kindsBySize[size], kind);
+            sizeCount[size]++;
+            if (size == 0) countEmpty(kind, 1);
+        }
+
+        private void countEmpty(int kind, int change) {
+            emptyByLecturer[kindLecturer[kind]] += change;
+            emptyByGroup[kindGroup[kind]] += change;
+            emptyByClass[kindClass[kind]] += change;
+        }
+
+        /**
+         * Recomputes the slots where at least one room of a class is free.
+         *
+         * @return true if they changed
+         */
+        private boolean refreshClass(int c) {
+            long free = 0L;
+            for (int r : classRooms.get(c)) {
+                free |= ~roomBusy[r];
+            }
+            free &= ALL_SLOTS;
+            if (free == classFree[c]) return false;
+            classFree[c] = free;
+            return true;
+        }
+
+        private GenerationResult toResult() {
+            List<ScheduledSession> sessions = new ArrayList<>();
+
+            for (int u = 0; u < unitSlot.length; u++) {
+                int slot = unitSlot[u];
+                if (slot < 0) continue;
+
+                PlacementRequest request = unitRequest.get(u);
+                sessions.add(new ScheduledSession(request.getModule(), request.getLecturer(),
+                        rooms.get(unitRoom[u]), OccupancyGrid.timeslot(slot), request.getGroupId()));
+            }
+            return new GenerationResult(seed, sessions, failures, unplacedHours, evaluations);
+        }
+    }
+
+    /** Gets the rooms of the right type and size, smallest first so big rooms are kept free. */
+    private int[] suitableRooms(boolean lab, int capacity) {
+        List<Integer> result = new ArrayList<>();
+        for (int r = 0; r < rooms.size(); r++) {
+            Room room = rooms.get(r);
+            if (room.isLab() == lab && room.getCapacity() >= capacity) result.add(r);
+        }
+        result.sort(Comparator.comparingInt(r -> rooms.get(r).getCapacity()));
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Named groups clash across the whole timetable, "ALL" only clashes within a programme year. */
+    private static String groupKey(PlacementRequest request) {
+        String groupId = request.getGroupId();
+        if (groupId == null || groupId.equalsIgnoreCase("ALL")) {
+            Module m = request.getModule();
+            return "ALL/" + m.getProgrammeId().toUpperCase() + "/" + m.getYear() + "/" + m.getSemester();
+        }
+        return groupId.toUpperCase();
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+
+    private static void flip(long[] bits, int i) {
+        bits[i >>> 6] ^= 1L << i;
+    }
+
+    /** @return the lowest number in a set that is known not to be empty */
+    private static int first(long[] bits) {
+        int w = 0;
+        while (bits[w] == 0) w++;
+        return (w << 6) + Long.numberOfTrailingZeros(bits[w]);
+    }
+
+    private static List<List<Integer>> newLists(int size) {
+        List<List<Integer>> lists = new ArrayList<>();
+        for (int i = 0; i < size; i++) lists.add(new ArrayList<>());
+        return lists;
+    }
+}
@@ -1,15 +1,33 @@
 package controllers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Class for reading CSV files used by the system.
- * Each line of the file is split by commas and stored as a String array.
+ * Each row of the file is split by commas and stored as a String array.
+ *
+ * The file is memory mapped and scanned byte by byte straight from the mapping,
+ * without copying it to the heap and without regexes, per line Strings or streams.
+ * Files up to 2 GB are mapped in one go, larger ones a window at a time.
+ *
+ * Quoting follows RFC 4180: a field in double quotes may hold commas, line breaks
+ * and doubled quotes (""), and the quotes are removed. Spaces around unquoted fields
+ * are trimmed and blank lines are skipped. As with the String.split(",") reader this
+ * replaced, empty fields at the end of a row are dropped, so "a,b,," gives two fields.
  */
 
 public class CSVReader {
 
+    /** The most of the file mapped at once, the limit of a single mapping. */
+    private static final int WINDOW = Integer.MAX_VALUE;
+
     /**
      * Reads a CSV file from the given file path and returns its contents.
      * 
@@ -18,24 +36,218 @@ public class CSVReader {
      */
     public static List<String[]> readCSV(String filePath) {
         List<String[]> rows = new ArrayList<>();
+        forEachRow(filePath, rows::add);
+        return rows;
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-
-                if (line.trim().isEmpty()) continue;
-
-                String[] parts = Arrays.stream(line.split(","))
-                        .map(String::trim)
-                        .toArray(String[]::new);
+    /**
+     * Reads a CSV file one row at a time, so the whole file never has to be
+     * held in memory.
+     *
+     * @param filePath the path to the CSV file
+     * @param action   called with each row in file order
+     */
+    public static void forEachRow(String filePath, Consumer<String[]> action) {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Parser parser = new Parser(action);
+            long position = 0;
 
-                rows.add(parts);
+            while (position < size) {
+                int length = (int) Math.min(WINDOW, size - position);
+                boolean last = position + length == size;
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int start = (position == 0) ? skipByteOrderMark(buffer, length) : 0;
 
+                int consumed = parser.parse(buffer, start, length, last);
+                if (consumed == 0 && !last) throw new IOException("Row too long"); // bigger than a mapping
+                position += consumed; // the next window starts at the row that did not fit
             }
         } catch (IOException e) {
             System.err.println("Error reading CSV file: " + filePath);
             e.printStackTrace();
         }
-        return rows;
+    }
+
+    private static int skipByteOrderMark(ByteBuffer bytes, int length) {
+        if (length >= 3 && bytes.get(0) == (byte) 0xEF && bytes.get(1) == (byte) 0xBB && bytes.get(2) == (byte) 0xBF) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /** Splits the bytes into rows, reusing its buffers between fields and rows. */
+    private static class Parser {
+
+        /** Short values such as years, hours and programme IDs repeat a lot, so recent ones are reused. */
+        private static final int RECENT_SIZE = 1024;
+        private static final int RECENT_MAX_LENGTH = 12;
+
+        private final Consumer<String[]> action;
+        private String[] fields = new String[16];
+        private final byte[][] recentBytes = new byte[RECENT_SIZE][];
+        private final String[] recentValues = new String[RECENT_SIZE];
+        private byte[] scratch = new byte[256];
+        private int fieldCount;
+        private int keptCount;
+
+        Parser(Consumer<String[]> action) {
+            this.action = action;
+        }
+
+        /**
+         * Parses every complete row in the buffer.
+         *
+         * @param buf   the mapped bytes of the current window
+         * @param start where the first row begins
+         * @param limit where the window's bytes end
+         * @param last  true if the window reaches the end of the file
+         * @return how many bytes were used, up to the end of the last complete row
+         */
+        int parse(ByteBuffer buf, int start, int limit, boolean last) {
+            int pos = start;
+            while (pos < limit) {
+                int next = parseRow(buf, pos, limit, last);
+                if (next < 0) return pos;
+                pos = next;
+            }
+            return limit;
+        }
+
+        /** Parses one row. Returns where the next row starts, or -1 if the row runs past the window. */
+        private int parseRow(ByteBuffer buf, int pos, int limit, boolean last) {
+            fieldCount = 0;
+            keptCount = 0;
+            boolean quotedField = false;
+            while (true) {
+                int p = skipSpaces(buf, pos, limit);
+                String value;
+                boolean quoted = p < limit && buf.get(p) == '"';
+                if (quoted) {
+                    quotedField = true;
+                    int len = 0;
+                    p++;
+                    while (true) {
+                        if (p >= limit) {
+                            if (!last) return -1;
+                            break; // no closing quote, keep what was read
+                        }
+                        byte b = buf.get(p);
+                        if (b == '"') {
+                            if (p + 1 >= limit && !last) return -1;
+                            if (p + 1 < limit && buf.get(p + 1) == '"') {
+                                len = put(len, (byte) '"');
+                                p += 2;
+                                continue;
+                            }
+                            p++;
+                            break;
+                        }
+                        len = put(len, b);
+                        p++;
+                    }
+                    // anything between the closing quote and the comma is kept, apart from spaces
+                    int end = endOfField(buf, p, limit);
+                    if (end < 0) {
+                        if (!last) return -1;
+                        end = limit;
+                    }
+                    for (int i = p; i < trimEnd(buf, p, end); i++) {
+                        len = put(len, buf.get(i));
+                    }
+                    p = end;
+                    value = text(len);
+                } else {
+                    int end = endOfField(buf, p, limit);
+                    if (end < 0) {
+                        if (!last) return -1;
+                        end = limit;
+                    }
+                    int len = trimEnd(buf, p, end) - p;
+                    if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                    buf.get(p, scratch, 0, len);
+                    value = text(len);
+                    p = end;
+                }
+                addField(value, quoted);
+
+                if (p >= limit) { // end of file without a line break
+                    finishRow(quotedField);
+                    return limit;
+                }
+                byte b = buf.get(p);
+                if (b == ',') {
+                    pos = p + 1;
+                    if (pos >= limit && !last) return -1;
+                    continue;
+                }
+                if (b == '\r') {
+                    if (p + 1 >= limit && !last) return -1;
+                    if (p + 1 < limit && buf.get(p + 1) == '\n') p++;
+                }
+                finishRow(quotedField);
+                return p + 1;
+            }
+        }
+
+        /** Finds the comma or line break that ends a field, or -1 if the window ends first. */
+        private static int endOfField(ByteBuffer buf, int p, int limit) {
+            for (; p < limit; p++) {
+                byte b = buf.get(p);
+                if (b == ',' || b == '\n' || b == '\r') return p;
+            }
+            return -1;
+        }
+
+        private static int skipSpaces(ByteBuffer buf, int p, int limit) {
+            while (p < limit && isSpace(buf.get(p))) p++;
+            return p;
+        }
+
+        private static int trimEnd(ByteBuffer buf, int start, int end) {
+            while (end > start && isSpace(buf.get(end - 1))) end--;
+            return end;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+
+        /** Makes the String for the field in the scratch buffer, reusing an earlier String with the same short value. */
+        private String text(int len) {
+            if (len > RECENT_MAX_LENGTH) return new String(scratch, 0, len, StandardCharsets.UTF_8);
+
+            int hash = len;
+            for (int i = 0; i < len; i++) {
+                hash = 31 * hash + scratch[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (RECENT_SIZE - 1);
+            byte[] seen = recentBytes[slot];
+            if (seen != null && Arrays.equals(seen, 0, seen.length, scratch, 0, len)) {
+                return recentValues[slot];
+            }
+            String value = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            recentBytes[slot] = Arrays.copyOf(scratch, len);
+            recentValues[slot] = value;
+            return value;
+        }
+
+        private int put(int len, byte b) {
+            if (len == scratch.length) scratch = Arrays.copyOf(scratch, len * 2);
+            scratch[len] = b;
+            return len + 1;
+        }
+
+        private void addField(String value, boolean quoted) {
+            if (fieldCount == fields.length) fields = Arrays.copyOf(fields, fieldCount * 2);
+            fields[fieldCount++] = value;
+            if (quoted || !value.isEmpty()) keptCount = fieldCount;
+        }
+
+        /** Passes the row on without its trailing empty fields, skipping lines that were blank. */
+        private void finishRow(boolean quoted) {
+            if (fieldCount == 1 && !quoted && fields[0].isEmpty()) return;
+            action.accept(Arrays.copyOf(fields, keptCount));
+        }
     }
 }
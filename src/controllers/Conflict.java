@@ -0,0 +1,53 @@
+package controllers;
+
+import Model.Timetable.ScheduledSession;
+
+/**
+ * Two sessions that use the same room, lecturer or student group at overlapping times.
+ */
+public class Conflict {
+
+    /** What the two sessions share. */
+    public enum Type { ROOM, LECTURER, GROUP }
+
+    private final Type type;
+    private final String resource;
+    private final ScheduledSession first;
+    private final ScheduledSession second;
+
+    /**
+     * Creates a conflict.
+     *
+     * @param type     what the sessions share
+     * @param resource the room ID, lecturer ID or group that is double booked
+     * @param first    the session that starts first
+     * @param second   the other session
+     */
+    public Conflict(Type type, String resource, ScheduledSession first, ScheduledSession second) {
+        this.type = type;
+        this.resource = resource;
+        this.first = first;
+        this.second = second;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public ScheduledSession getFirst() {
+        return first;
+    }
+
+    public ScheduledSession getSecond() {
+        return second;
+    }
+
+    @Override
+    public String toString() {
+        return type + " CONFLICT: " + first + " <--> " + second;
+    }
+}
@@ -0,0 +1,116 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.Timeslot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Checks a whole timetable for room, lecturer and student group clashes.
+ *
+ * Sessions are put into one bucket per (resource, day) and each bucket is sorted by
+ * start hour. A sweep over the bucket keeps the sessions that are still running, so
+ * each session is only compared with the ones it actually overlaps. Buckets do not
+ * depend on each other and are checked in parallel.
+ *
+ * The group rules are the same as the generator's: a named group (e.g. G1) clashes
+ * with itself in any module, and "ALL" sessions clash within one programme, year
+ * and semester.
+ */
+public class ConflictAuditor {
+
+    private static final Comparator<ScheduledSession> BY_START = Comparator
+            .comparingInt((ScheduledSession s) -> s.getTimeslot().getStartHour())
+            .thenComparingInt(s -> s.getTimeslot().getDuration());
+
+    /**
+     * Finds every clash in a list of sessions.
+     *
+     * @param sessions the timetable to check
+     * @return the clashes found
+     */
+    public ConflictReport audit(List<ScheduledSession> sessions) {
+        Map<String, Bucket> buckets = new HashMap<>();
+        for (ScheduledSession s : sessions) {
+            Timeslot t = s.getTimeslot();
+            if (t == null) continue;
+            if (s.getRoom() != null) {
+                add(buckets, Conflict.Type.ROOM, s.getRoom().getRoomId(), t.getDay(), s);
+            }
+            if (s.getLecturer() != null) {
+                add(buckets, Conflict.Type.LECTURER, s.getLecturer().getLecturerId(), t.getDay(), s);
+            }
+            String group = groupKey(s);
+            if (group != null) {
+                add(buckets, Conflict.Type.GROUP, group, t.getDay(), s);
+            }
+        }
+
+        List<Bucket> ordered = new ArrayList<>(buckets.values());
+        ordered.sort(Comparator.comparing((Bucket b) -> b.type).thenComparing(b -> b.resource).thenComparing(b -> b.day));
+
+        List<Conflict> conflicts = ordered.parallelStream()
+                .map(Bucket::sweep)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+        return new ConflictReport(conflicts);
+    }
+
+    private static void add(Map<String, Bucket> buckets, Conflict.Type type, String resource,
+                            String day, ScheduledSession s) {
+        if (resource == null) return;
+        String key = type + "|" + resource.toLowerCase() + "|" + day;
+        buckets.computeIfAbsent(key, k -> new Bucket(type, resource, day == null ? "" : day)).sessions.add(s);
+    }
+
+    private static String groupKey(ScheduledSession s) {
+        String groupId = s.getGroupId();
+        if (groupId != null && !groupId.equalsIgnoreCase("ALL")) return groupId.toUpperCase();
+        Module m = s.getModule();
+        if (m == null || m.getProgrammeId() == null) return null;
+        return "ALL " + m.getProgrammeId().toUpperCase() + " Y" + m.getYear() + " S" + m.getSemester();
+    }
+
+    /** The sessions of one resource on one day. */
+    private static class Bucket {
+
+        final Conflict.Type type;
+        final String resource;
+        final String day;
+        final List<ScheduledSession> sessions = new ArrayList<>();
+
+        Bucket(Conflict.Type type, String resource, String day) {
+            this.type = type;
+            this.resource = resource;
+            this.day = day;
+        }
+
+        /** Walks the sessions in start order, comparing each with those still running. */
+        List<Conflict> sweep() {
+            List<Conflict> found = new ArrayList<>();
+            if (sessions.size() < 2) return found;
+            sessions.sort(BY_START);
+
+            List<ScheduledSession> running = new ArrayList<>();
+            for (ScheduledSession s : sessions) {
+                int start = s.getTimeslot().getStartHour();
+                running.removeIf(r -> end(r) <= start);
+                for (ScheduledSession r : running) {
+                    found.add(new Conflict(type, resource, r, s));
+                }
+                running.add(s);
+            }
+            return found;
+        }
+
+        private static int end(ScheduledSession s) {
+            return s.getTimeslot().getStartHour() + s.getTimeslot().getDuration();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package controllers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a ConflictAuditor run: every clash found, grouped by type.
+ */
+public class ConflictReport {
+
+    private final List<Conflict> conflicts;
+
+    /**
+     * @param conflicts the clashes found
+     */
+    public ConflictReport(List<Conflict> conflicts) {
+        this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /**
+     * @return every clash, read-only
+     */
+    public List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @param type the kind of clash
+     * @return the clashes of that kind
+     */
+    public List<Conflict> getConflicts(Conflict.Type type) {
+        List<Conflict> result = new ArrayList<>();
+        for (Conflict c : conflicts) {
+            if (c.getType() == type) result.add(c);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if no clashes were found
+     */
+    public boolean isEmpty() {
+        return conflicts.isEmpty();
+    }
+
+    /**
+     * @return the number of clashes
+     */
+    public int size() {
+        return conflicts.size();
+    }
+}
@@ -0,0 +1,119 @@
+package controllers;
+
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.Timeslot;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes sessions straight out as CSV rows in the same format as DataManager.saveSessions.
+ * Only a fixed size buffer is kept in memory and it is flushed every FLUSH_EVERY rows,
+ * so a long generation run leaves a readable partial file behind if it stops early.
+ * Any Writer can be used, e.g. a file or System.out.
+ *
+ * Each row starts with the session's own ID, which is 0 for a session that was
+ * never given one.
+ */
+public class CsvSessionSink implements SessionSink {
+
+    public static final String[] HEADER = {"sessionId", "moduleCode", "day", "start", "end", "roomId", "lecturerId", "groupId"};
+
+    private static final int FLUSH_EVERY = 64;
+
+    private final String target;
+    private Writer writer;
+    private int count;
+    private int unflushed;
+
+    /**
+     * Opens the CSV file and writes the header row.
+     *
+     * @param filePath the path to the output CSV file
+     */
+    public CsvSessionSink(String filePath) {
+        this.target = filePath;
+        try {
+            writer = new BufferedWriter(new FileWriter(filePath));
+            writeRow(HEADER);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Writes the CSV to an already open writer and writes the header row.
+     * The writer is closed when this sink is closed.
+     *
+     * @param out  where to write the rows
+     * @param name a name for the output used in error messages
+     */
+    public CsvSessionSink(Writer out, String name) {
+        this.target = name;
+        writer = (out instanceof BufferedWriter) ? out : new BufferedWriter(out);
+        try {
+            writeRow(HEADER);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * @return how many sessions have been written
+     */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void accept(ScheduledSession s) {
+        Timeslot t = s.getTimeslot();
+        String moduleCode = (s.getModule() != null) ? s.getModule().getModuleCode() : "";
+        String day = (t != null) ? t.getDay() : "";
+        int start = (t != null) ? t.getStartHour() : 0;
+        int end = (t != null) ? t.getStartHour() + t.getDuration() : start;
+        String roomId = (s.getRoom() != null) ? s.getRoom().getRoomId() : "";
+        String lecturerId = (s.getLecturer() != null) ? s.getLecturer().getLecturerId() : "";
+        String groupId = (s.getGroupId() != null) ? s.getGroupId() : "";
+        count++;
+
+        String id = String.valueOf(s.getSessionId());
+        if (writer == null) return;
+        try {
+            writeRow(new String[]{id, moduleCode, day, String.valueOf(start), String.valueOf(end), roomId, lecturerId, groupId});
+            if (++unflushed >= FLUSH_EVERY) {
+                writer.flush();
+                unflushed = 0;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        writer = null;
+    }
+
+    private void writeRow(String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) writer.write(',');
+            writer.write(row[i]);
+        }
+        writer.write(System.lineSeparator());
+    }
+
+    private void fail(IOException e) {
+        System.err.println("Error writing to CSV file: " + target);
+        e.printStackTrace();
+        writer = null;
+    }
+}
@@ -3,13 +3,21 @@ package controllers;
 import Model.People.Student;
 import Model.People.Lecturer;
 import Model.People.Admin;
+import Model.People.User;
 import Model.Academic.Module;
 import Model.Room.Room;
+import Model.Room.RoomIndex;
 import Model.Timetable.ScheduledSession;
 import Model.Timetable.Timeslot;
 import Model.Academic.Programme;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 
 /**
  * The DataManager class is responsible for loading data from CSV files
@@ -23,17 +31,31 @@ public final class DataManager {
     public List<Room> rooms = new ArrayList<>();
     public List<Module> modules = new ArrayList<>();
     public List<Programme> programmes = new ArrayList<>();
-    public List<ScheduledSession> sessions = new ArrayList<>();
     public List<Admin> admins = new ArrayList<>();
 
+    private RoomIndex roomIndex = new RoomIndex(rooms);
+
+    // Concurrent because the find methods fill them in on a miss and can be called from any thread
+    private final Map<String, Module> modulesByCode = new ConcurrentHashMap<>();
+    private final Map<String, Room> roomsById = new ConcurrentHashMap<>();
+    private final Map<String, Lecturer> lecturersById = new ConcurrentHashMap<>();
+    private final Map<String, Student> studentsById = new ConcurrentHashMap<>();
+    private final Map<Module, List<Lecturer>> lecturersByModule = new ConcurrentHashMap<>();
+    private List<String> loadProblems = List.of();
+    private final Map<String, User> usersByEmail = new HashMap<>();
+
     /**
      * Loads student data from a CSV file and creates Student objects.
      *
      * @param file the path to the students CSV file
      */
     public void loadStudents(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        addStudents(parseStudents(CSVReader.readCSV(file)));
+        rebuildLookups();
+    }
 
+    private static List<Student> parseStudents(List<String[]> data) {
+        List<Student> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("studentId")) continue;
 
@@ -45,7 +67,15 @@ public final class DataManager {
             int year = Integer.parseInt(row[5]);
             String groupId = row[6];
 
-            students.add(new Student(id, name, email, password, programme, year, groupId));
+            parsed.add(new Student(id, name, email, password, programme, year, groupId));
+        }
+        return parsed;
+    }
+
+    private void addStudents(List<Student> parsed) {
+        for (Student student : parsed) {
+            students.add(student);
+            indexUser(student);
         }
     }
 
@@ -55,12 +85,24 @@ public final class DataManager {
      * @param file the path to the lecturers CSV file
      */
     public void loadLecturers(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        addLecturers(parseLecturers(CSVReader.readCSV(file)));
+        rebuildLookups();
+    }
 
+    private static List<Lecturer> parseLecturers(List<String[]> data) {
+        List<Lecturer> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("lecturerId")) continue;
 
-            lecturers.add(new Lecturer(row[0], row[1], row[2], row[3], row[4]));
+            parsed.add(new Lecturer(row[0], row[1], row[2], row[3], row[4]));
+        }
+        return parsed;
+    }
+
+    private void addLecturers(List<Lecturer> parsed) {
+        for (Lecturer lecturer : parsed) {
+            lecturers.add(lecturer);
+            indexUser(lecturer);
         }
     }
 
@@ -70,8 +112,13 @@ public final class DataManager {
      * @param file the path to the rooms CSV file
      */
     public void loadRooms(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        rooms.addAll(parseRooms(CSVReader.readCSV(file)));
+        rebuildRoomIndex();
+        rebuildLookups();
+    }
 
+    private static List<Room> parseRooms(List<String[]> data) {
+        List<Room> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("roomId")) continue;
 
@@ -80,8 +127,25 @@ public final class DataManager {
             int capacity = Integer.parseInt(row[2]);
             String building = row[3];
 
-            rooms.add(new Room(id, type, capacity, building));
+            parsed.add(new Room(id, type, capacity, building));
         }
+        return parsed;
+    }
+
+    /**
+     * Gets the index of rooms by type and capacity.
+     *
+     * @return the room index built when rooms were last loaded
+     */
+    public RoomIndex getRoomIndex() {
+        return roomIndex;
+    }
+
+    /**
+     * Rebuilds the room index. Call this after changing the rooms list directly.
+     */
+    public void rebuildRoomIndex() {
+        roomIndex = new RoomIndex(rooms);
     }
 
     /**
@@ -90,8 +154,12 @@ public final class DataManager {
      * @param file the path to the modules CSV file
      */
     public void loadModules(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        modules.addAll(parseModules(CSVReader.readCSV(file)));
+        rebuildLookups();
+    }
 
+    private static List<Module> parseModules(List<String[]> data) {
+        List<Module> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("moduleCode")) continue;
 
@@ -104,8 +172,28 @@ public final class DataManager {
             int lab = Integer.parseInt(row[6]);
             int tut = Integer.parseInt(row[7]);
 
-            modules.add(new Module(name, code, programmeId, year, semester, lec, lab, tut));
+            Module module = new Module(name, code, programmeId, year, semester, lec, lab, tut);
+            if (row.length > 8) {
+                module.setLecturerIds(parseIdList(row[8]));
+            }
+            parsed.add(module);
+        }
+        return parsed;
+    }
+
+    /**
+     * Splits a semicolon separated ID list such as "2001;3001;3002".
+     *
+     * @param field the CSV field, with or without quotes
+     * @return the IDs in order
+     */
+    private static List<String> parseIdList(String field) {
+        List<String> ids = new ArrayList<>();
+        String value = field.replace("\"", "");
+        for (String id : value.split(";")) {
+            if (!id.trim().isEmpty()) ids.add(id.trim());
         }
+        return ids;
     }
 
     /**
@@ -114,13 +202,17 @@ public final class DataManager {
      * @param file the path to the programmes CSV file
      */
     public void loadProgrammes(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        programmes.addAll(parseProgrammes(CSVReader.readCSV(file)));
+    }
 
+    private static List<Programme> parseProgrammes(List<String[]> data) {
+        List<Programme> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("programmeId")) continue;
 
-            programmes.add(new Programme(row[0], row[1]));
+            parsed.add(new Programme(row[0], row[1]));
         }
+        return parsed;
     }
 
     /**
@@ -144,9 +236,11 @@ public final class DataManager {
             Timeslot timeslot = new Timeslot(row[2], start, duration);
             Room room = findRoom(row[5]);
             Lecturer lecturer = findLecturer(row[6]);
-            String groupId = "ALL";
+            String groupId = (row.length > 7 && !row[7].isEmpty()) ? row[7] : "ALL";
 
-            loaded.add(new ScheduledSession(module, lecturer, room, timeslot, groupId));
+            ScheduledSession session = new ScheduledSession(module, lecturer, room, timeslot, groupId);
+            session.setSessionId(parseSessionId(row[0]));
+            loaded.add(session);
         }
         return loaded;
     }
@@ -157,12 +251,107 @@ public final class DataManager {
      * @param file the path to the admins CSV file
      */
     public void loadAdmins(String file) {
-        List<String[]> data = CSVReader.readCSV(file);
+        addAdmins(parseAdmins(CSVReader.readCSV(file)));
+    }
 
+    private static List<Admin> parseAdmins(List<String[]> data) {
+        List<Admin> parsed = new ArrayList<>();
         for (String[] row : data) {
             if (row[0].equalsIgnoreCase("adminId")) continue;
 
-            admins.add(new Admin(row[0], row[1], row[2], row[3]));
+            parsed.add(new Admin(row[0], row[1], row[2], row[3]));
+        }
+        return parsed;
+    }
+
+    private void addAdmins(List<Admin> parsed) {
+        for (Admin admin : parsed) {
+            admins.add(admin);
+            indexUser(admin);
+        }
+    }
+
+    /**
+     * Loads students, lecturers, rooms, modules, programmes and admins from one folder.
+     * The files do not depend on each other, so each one is read and turned into objects
+     * on its own thread. The results are then added in the usual order on the calling
+     * thread, the room index and lookups are built once, each module's lecturer IDs are
+     * resolved to Lecturer objects and references between the files are checked
+     * (see getLoadProblems).
+     *
+     * @param directory the folder holding students.csv, lecturers.csv, rooms.csv,
+     *                  modules.csv, programmes.csv and admins.csv
+     * @return how many milliseconds each file took to read and parse, then "join" for
+     *         the time spent adding everything, in load order
+     */
+    public Map<String, Long> loadAll(String directory) {
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        try {
+            CompletableFuture<Parsed<Student>> studentFile = parse(pool, directory, "students.csv", DataManager::parseStudents);
+            CompletableFuture<Parsed<Lecturer>> lecturerFile = parse(pool, directory, "lecturers.csv", DataManager::parseLecturers);
+            CompletableFuture<Parsed<Room>> roomFile = parse(pool, directory, "rooms.csv", DataManager::parseRooms);
+            CompletableFuture<Parsed<Module>> moduleFile = parse(pool, directory, "modules.csv", DataManager::parseModules);
+            CompletableFuture<Parsed<Programme>> programmeFile = parse(pool, directory, "programmes.csv", DataManager::parseProgrammes);
+            CompletableFuture<Parsed<Admin>> adminFile = parse(pool, directory, "admins.csv", DataManager::parseAdmins);
+
+            Map<String, Long> timings = new LinkedHashMap<>();
+            List<Student> parsedStudents = join(studentFile, timings);
+            List<Lecturer> parsedLecturers = join(lecturerFile, timings);
+            List<Room> parsedRooms = join(roomFile, timings);
+            List<Module> parsedModules = join(moduleFile, timings);
+            List<Programme> parsedProgrammes = join(programmeFile, timings);
+            List<Admin> parsedAdmins = join(adminFile, timings);
+
+            long start = System.nanoTime();
+            addStudents(parsedStudents);
+            addLecturers(parsedLecturers);
+            rooms.addAll(parsedRooms);
+            modules.addAll(parsedModules);
+            programmes.addAll(parsedProgrammes);
+            addAdmins(parsedAdmins);
+            rebuildRoomIndex();
+            rebuildLookups();
+            loadProblems = checkReferences();
+            timings.put("join", (System.nanoTime() - start) / 1_000_000);
+            return timings;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <T> CompletableFuture<Parsed<T>> parse(ExecutorService pool, String directory, String name,
+                                                          Function<List<String[]>, List<T>> parser) {
+        String file = directory + "/" + name;
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            List<T> items = parser.apply(CSVReader.readCSV(file));
+            return new Parsed<>(file, items, (System.nanoTime() - start) / 1_000_000);
+        }, pool);
+    }
+
+    /** Waits for one file and records its time. A parse error is thrown as it would be by the load methods. */
+    private static <T> List<T> join(CompletableFuture<Parsed<T>> future, Map<String, Long> timings) {
+        try {
+            Parsed<T> parsed = future.join();
+            timings.put(parsed.file, parsed.millis);
+            return parsed.items;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    /** The objects read from one file and how long it took. */
+    private static class Parsed<T> {
+
+        final String file;
+        final List<T> items;
+        final long millis;
+
+        Parsed(String file, List<T> items, long millis) {
+            this.file = file;
+            this.items = items;
+            this.millis = millis;
         }
     }
 
@@ -173,9 +362,14 @@ public final class DataManager {
      * @return the matching Module or null if not found
      */
     public Module findModule(String code) {
+        if (code == null) return null;
+        Module cached = modulesByCode.get(code);
+        if (cached != null) return cached;
         for (Module m : modules)
-            if (m.getModuleCode().equals(code))
+            if (m.getModuleCode().equals(code)) {
+                modulesByCode.put(code, m);
                 return m;
+            }
         return null;
     }
 
@@ -186,9 +380,14 @@ public final class DataManager {
      * @return the matching Room or null if not found
      */
     public Room findRoom(String id) {
+        if (id == null) return null;
+        Room cached = roomsById.get(id);
+        if (cached != null) return cached;
         for (Room r : rooms)
-            if (r.getRoomId().equals(id))
+            if (r.getRoomId().equals(id)) {
+                roomsById.put(id, r);
                 return r;
+            }
         return null;
     }
 
@@ -199,38 +398,207 @@ public final class DataManager {
      * @return the matching Lecturer or null if not found
      */
     public Lecturer findLecturer(String id) {
+        if (id == null) return null;
+        Lecturer cached = lecturersById.get(id);
+        if (cached != null) return cached;
         for (Lecturer l : lecturers)
-            if (l.getLecturerId().equals(id))
+            if (l.getLecturerId().equals(id)) {
+                lecturersById.put(id, l);
                 return l;
+            }
         return null;
     }
 
-    public void saveSessions(String file) {
-        List<String[]> rows = new ArrayList<>();
-        rows.add(new String[]{"sessionId", "moduleCode", "day", "start", "end", "roomId", "lecturerId", "groupId"});
-
-        int id = 1;
-        for (ScheduledSession s : sessions) {
-            String moduleCode = (s.getModule() != null) ? s.getModule().getModuleCode() : "";
-            String day = (s.getTimeslot() != null) ? s.getTimeslot().getDay() : "";
-            int start = (s.getTimeslot() != null) ? s.getTimeslot().getStartHour() : 0;
-            int end = (s.getTimeslot() != null) ? s.getTimeslot().getStartHour() + s.getTimeslot().getDuration() : start;
-            String roomId = (s.getRoom() != null) ? s.getRoom().getRoomId() : "";
-            String lecturerId = (s.getLecturer() != null) ? s.getLecturer().getLecturerId() : "";
-            String groupId = (s.getGroupId() != null) ? s.getGroupId() : "";
-
-            rows.add(new String[]{
-                    String.valueOf(id++),
-                    moduleCode,
-                    day,
-                    String.valueOf(start),
-                    String.valueOf(end),
-                    roomId,
-                    lecturerId,
-                    groupId
-            });
+    /**
+     * Finds a student by their student ID.
+     *
+     * @param id the student ID
+     * @return the matching Student or null if not found
+     */
+    public Student findStudent(String id) {
+        if (id == null) return null;
+        Student cached = studentsById.get(id);
+        if (cached != null) return cached;
+        for (Student s : students)
+            if (s.getId().equals(id)) {
+                studentsById.put(id, s);
+                return s;
+            }
+        return null;
+    }
+
+    /**
+     * Gets the lecturers listed for a module in modules.csv. IDs with no matching
+     * lecturer are left out.
+     *
+     * @param module the module
+     * @return the module's lecturers in the order they are listed
+     */
+    public List<Lecturer> getLecturersFor(Module module) {
+        return lecturersByModule.computeIfAbsent(module, m -> {
+            List<Lecturer> resolved = new ArrayList<>();
+            for (String id : m.getLecturerIds()) {
+                Lecturer lecturer = findLecturer(id);
+                if (lecturer != null) resolved.add(lecturer);
+            }
+            return Collections.unmodifiableList(resolved);
+        });
+    }
+
+    /**
+     * Gets the problems found between the files by the last loadAll, for example a
+     * module listing a lecturer ID that is not in lecturers.csv.
+     *
+     * @return a message for every problem, empty if the files agree
+     */
+    public List<String> getLoadProblems() {
+        return loadProblems;
+    }
+
+    /**
+     * Rebuilds the maps used by findModule, findRoom, findLecturer, findStudent and
+     * getLecturersFor. Anything added to the lists is found anyway, but call this after
+     * removing or replacing items in the lists directly.
+     */
+    public void rebuildLookups() {
+        modulesByCode.clear();
+        roomsById.clear();
+        lecturersById.clear();
+        studentsById.clear();
+        lecturersByModule.clear();
+        for (Module m : modules) {
+            if (m.getModuleCode() != null) modulesByCode.putIfAbsent(m.getModuleCode(), m);
+        }
+        for (Room r : rooms) {
+            if (r.getRoomId() != null) roomsById.putIfAbsent(r.getRoomId(), r);
+        }
+        for (Lecturer l : lecturers) {
+            if (l.getLecturerId() != null) lecturersById.putIfAbsent(l.getLecturerId(), l);
+        }
+        for (Student s : students) {
+            if (s.getId() != null) studentsById.putIfAbsent(s.getId(), s);
+        }
+    }
+
+    /**
+     * Resolves every module's lecturers and checks the IDs one file uses for another:
+     * module lecturers and programmes, student programmes, and IDs that appear twice.
+     */
+    private List<String> checkReferences() {
+        List<String> problems = new ArrayList<>();
+        Set<String> programmeIds = new HashSet<>();
+        for (Programme p : programmes) programmeIds.add(p.getId());
+
+        for (Module m : modules) {
+            if (modulesByCode.get(m.getModuleCode()) != m) {
+                problems.add("Module " + m.getModuleCode() + " is listed more than once");
+            }
+            if (!programmeIds.contains(m.getProgrammeId())) {
+                problems.add("Module " + m.getModuleCode() + " belongs to unknown programme " + m.getProgrammeId());
+            }
+            for (String id : m.getLecturerIds()) {
+                if (findLecturer(id) == null) {
+                    problems.add("Module " + m.getModuleCode() + " lists unknown lecturer " + id);
+                }
+            }
+            getLecturersFor(m);
+        }
+        for (Student s : students) {
+            if (studentsById.get(s.getId()) != s) problems.add("Student " + s.getId() + " is listed more than once");
+            if (!programmeIds.contains(s.getProgrammeID())) {
+                problems.add("Student " + s.getId() + " is on unknown programme " + s.getProgrammeID());
+            }
+        }
+        for (Lecturer l : lecturers) {
+            if (lecturersById.get(l.getLecturerId()) != l) {
+                problems.add("Lecturer " + l.getLecturerId() + " is listed more than once");
+            }
+        }
+        for (Room r : rooms) {
+            if (roomsById.get(r.getRoomId()) != r) problems.add("Room " + r.getRoomId() + " is listed more than once");
+        }
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * Finds a student, lecturer or admin by email, ignoring case.
+     *
+     * @param email the email address
+     * @return the matching user or null if not found
+     */
+    public User findUserByEmail(String email) {
+        String key = emailKey(email);
+        return key == null ? null : usersByEmail.get(key);
+    }
+
+    /**
+     * Adds a new student, lecturer or admin and makes them available for login.
+     *
+     * @param user the user to add
+     * @return false if another user already has the same email
+     */
+    public boolean addUser(User user) {
+        String key = emailKey(user.getEmail());
+        if (key == null || usersByEmail.containsKey(key)) return false;
+
+        if (user instanceof Student s) students.add(s);
+        else if (user instanceof Lecturer l) lecturers.add(l);
+        else if (user instanceof Admin a) admins.add(a);
+        else return false;
+
+        usersByEmail.put(key, user);
+        return true;
+    }
+
+    /**
+     * Removes every student, lecturer and admin with the given email, ignoring case.
+     *
+     * @param email the email address
+     * @return true if anyone was removed
+     */
+    public boolean removeUser(String email) {
+        String key = emailKey(email);
+        if (key == null) return false;
+
+        boolean removedStudent = students.removeIf(s -> key.equals(emailKey(s.getEmail())));
+        boolean removedLecturer = lecturers.removeIf(l -> key.equals(emailKey(l.getEmail())));
+        boolean removed = admins.removeIf(a -> key.equals(emailKey(a.getEmail()))) || removedLecturer || removedStudent;
+
+        usersByEmail.remove(key);
+        if (removedLecturer || removedStudent) rebuildLookups();
+        return removed;
+    }
+
+    /** Keeps the first user loaded for each email. */
+    private void indexUser(User user) {
+        String key = emailKey(user.getEmail());
+        if (key != null) usersByEmail.putIfAbsent(key, user);
+    }
+
+    private static String emailKey(String email) {
+        return email == null ? null : email.trim().toLowerCase();
+    }
+
+    /**
+     * Writes sessions to a CSV file, e.g. TimetableService.getStoredSessions.
+     *
+     * @param file     the path to the sessions CSV file
+     * @param sessions the sessions to write
+     */
+    public void saveSessions(String file, List<ScheduledSession> sessions) {
+        try (CsvSessionSink sink = new CsvSessionSink(file)) {
+            for (ScheduledSession s : sessions) {
+                sink.accept(s);
+            }
+        }
+    }
+
+    private static int parseSessionId(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
         }
-        CSVWriter.writeCSV(file, rows);
     }
 
     public void saveStudents(String file) {
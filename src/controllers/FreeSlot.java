@@ -0,0 +1,48 @@
+package controllers;
+
+import Model.Timetable.Timeslot;
+
+/**
+ * A possible time for a meeting or make-up class, with how many of the
+ * people asked about are already busy at that time.
+ */
+public class FreeSlot {
+
+    private final Timeslot timeslot;
+    private final int clashes;
+
+    /**
+     * @param timeslot the time
+     * @param clashes  how many participants are busy during it
+     */
+    public FreeSlot(Timeslot timeslot, int clashes) {
+        this.timeslot = timeslot;
+        this.clashes = clashes;
+    }
+
+    /**
+     * @return the time
+     */
+    public Timeslot getTimeslot() {
+        return timeslot;
+    }
+
+    /**
+     * @return how many participants are busy during the slot, 0 if everyone is free
+     */
+    public int getClashes() {
+        return clashes;
+    }
+
+    /**
+     * @return true if every participant is free
+     */
+    public boolean isFreeForAll() {
+        return clashes == 0;
+    }
+
+    @Override
+    public String toString() {
+        return timeslot + (clashes == 0 ? "   everyone free" : "   " + clashes + " busy");
+    }
+}
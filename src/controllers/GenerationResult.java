@@ -0,0 +1,115 @@
+package controllers;
+
+import Model.Timetable.ScheduledSession;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the outcome of one timetable generation run: the sessions that were
+ * placed, how many teaching hours could not be placed and why.
+ *
+ * The candidate evaluation count is one per slot or room tried, and one per week
+ * of slots checked together as a bitset. Every engine counts this way so their
+ * numbers can be compared.
+ */
+public class GenerationResult {
+
+    private final long seed;
+    private final List<ScheduledSession> sessions;
+    private final List<String> failures;
+    private final int unplacedHours;
+    private final long candidateEvaluations;
+    private final int softPenalty;
+
+    /**
+     * Creates a generation result.
+     *
+     * @param seed          the random seed the run used
+     * @param sessions      the sessions that were placed
+     * @param failures      a message for every module/group that could not be fully placed
+     * @param unplacedHours the total number of teaching hours left unplaced
+     * @param candidateEvaluations how many times busy hours were checked
+     */
+    public GenerationResult(long seed, List<ScheduledSession> sessions, List<String> failures,
+                            int unplacedHours, long candidateEvaluations) {
+        this(seed, sessions, failures, unplacedHours, candidateEvaluations, -1);
+    }
+
+    /**
+     * Creates a generation result that has been scored by the local search optimiser.
+     *
+     * @param seed          the random seed the run used
+     * @param sessions      the sessions that were placed
+     * @param failures      a message for every module/group that could not be fully placed
+     * @param unplacedHours the total number of teaching hours left unplaced
+     * @param candidateEvaluations how many times busy hours were checked
+     * @param softPenalty   the soft constraint penalty, or -1 if it was not scored
+     */
+    public GenerationResult(long seed, List<ScheduledSession> sessions, List<String> failures,
+                            int unplacedHours, long candidateEvaluations, int softPenalty) {
+        this.seed = seed;
+        this.sessions = Collections.unmodifiableList(sessions);
+        this.failures = Collections.unmodifiableList(failures);
+        this.unplacedHours = unplacedHours;
+        this.candidateEvaluations = candidateEvaluations;
+        this.softPenalty = softPenalty;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public List<ScheduledSession> getSessions() {
+        return sessions;
+    }
+
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    public int getUnplacedHours() {
+        return unplacedHours;
+    }
+
+    public long getCandidateEvaluations() {
+        return candidateEvaluations;
+    }
+
+    public int getSoftPenalty() {
+        return softPenalty;
+    }
+
+    /**
+     * Creates a copy of this result with different sessions and penalty,
+     * used when the optimiser improves a timetable.
+     *
+     * @param improved    the new sessions
+     * @param softPenalty the penalty of the new sessions
+     * @return the updated result
+     */
+    public GenerationResult withSessions(List<ScheduledSession> improved, int softPenalty) {
+        return new GenerationResult(seed, improved, failures, unplacedHours, candidateEvaluations, softPenalty);
+    }
+
+    /**
+     * Checks if this result is better than another one.
+     * A result is better when it leaves fewer hours unplaced, or the same
+     * number of hours with a lower soft constraint penalty.
+     *
+     * @param other the result to compare with, may be null
+     * @return true if this result should be kept over the other
+     */
+    public boolean isBetterThan(GenerationResult other) {
+        if (other == null) return true;
+        if (unplacedHours != other.unplacedHours) return unplacedHours < other.unplacedHours;
+        return softPenalty >= 0 && other.softPenalty >= 0 && softPenalty < other.softPenalty;
+    }
+
+    @Override
+    public String toString() {
+        return "Seed " + seed + ": " + sessions.size() + " sessions, " + unplacedHours + " hours unplaced, "
+                + candidateEvaluations + " candidates tested"
+                + (softPenalty >= 0 ? ", penalty " + softPenalty : "");
+    }
+}
@@ -0,0 +1,232 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses one lecturer for every module from the lecturers listed for it in modules.csv,
+ * spreading the modules as evenly as possible.
+ *
+ * This is a bipartite matching where each lecturer may take up to "cap" modules.
+ * It is solved as a max flow (source -> module -> lecturer -> sink) with Dinic's algorithm,
+ * which on this kind of unit capacity graph works like Hopcroft-Karp. The cap starts at the
+ * smallest possible value and is raised one at a time, keeping the flow found so far,
+ * until every module that has an eligible lecturer is matched.
+ *
+ * When a timetable is re-generated, modules can keep the lecturer they had before. Those
+ * modules count towards their lecturer's cap but are not part of the flow, so only the
+ * modules whose lecturer is no longer eligible are matched again.
+ */
+public class LecturerAssigner {
+
+    private final List<Lecturer> lecturers;
+
+    /**
+     * Creates an assigner for the given lecturers.
+     *
+     * @param lecturers every lecturer that can be assigned
+     */
+    public LecturerAssigner(List<Lecturer> lecturers) {
+        this.lecturers = lecturers;
+    }
+
+    /**
+     * Assigns a lecturer to each module. Modules whose listed lecturers are all
+     * unknown are left out of the result.
+     *
+     * @param modules the modules to assign
+     * @return the chosen lecturer for each module
+     */
+    public Map<Module, Lecturer> assign(List<Module> modules) {
+        return assign(modules, Map.of());
+    }
+
+    /**
+     * Assigns a lecturer to each module, keeping the lecturer a module had before
+     * while that lecturer is still one of the module's listed lecturers.
+     *
+     * @param modules  the modules to assign
+     * @param previous the lecturer each module had before, e.g. from the stored sessions
+     * @return the chosen lecturer for each module
+     */
+    public Map<Module, Lecturer> assign(List<Module> modules, Map<Module, Lecturer> previous) {
+        Map<String, Integer> lecturerIndex = new HashMap<>();
+        for (int i = 0; i < lecturers.size(); i++) {
+            lecturerIndex.put(lecturers.get(i).getLecturerId(), i);
+        }
+
+        Map<Module, Lecturer> result = new HashMap<>();
+        int[] kept = new int[lecturers.size()];
+        List<Module> matchable = new ArrayList<>();
+        List<int[]> eligible = new ArrayList<>();
+        for (Module m : modules) {
+            Lecturer before = previous.get(m);
+            Integer index = before == null ? null : lecturerIndex.get(before.getLecturerId());
+            if (index != null && m.getLecturerIds().contains(before.getLecturerId())) {
+                result.put(m, lecturers.get(index));
+                kept[index]++;
+                continue;
+            }
+
+            int[] ids = m.getLecturerIds().stream()
+                    .filter(lecturerIndex::containsKey)
+                    .mapToInt(lecturerIndex::get)
+                    .distinct()
+                    .toArray();
+            if (ids.length == 0) continue;
+            matchable.add(m);
+            eligible.add(ids);
+        }
+
+        if (matchable.isEmpty()) return result;
+
+        FlowNetwork network = new FlowNetwork(matchable.size(), lecturers.size(), eligible, kept);
+        int cap = (matchable.size() + result.size() + lecturers.size() - 1) / lecturers.size();
+        network.setLecturerCapacity(cap);
+        int flow = network.maxFlow();
+        while (flow < matchable.size()) {
+            network.setLecturerCapacity(++cap);
+            flow += network.maxFlow();
+        }
+
+        for (int m = 0; m < matchable.size(); m++) {
+            result.put(matchable.get(m), lecturers.get(network.assignedLecturer(m)));
+        }
+        return result;
+    }
+
+    /**
+     * The flow graph. Nodes are: source, modules, lecturers, sink.
+     * Edges are stored in arrays, each edge followed by its reverse edge.
+     */
+    private static class FlowNetwork {
+
+        private final int modules;
+        private final int source;
+        private final int sink;
+        private final int[] head;
+        private final int[] level;
+        private final int[] next;
+        private final int[] to;
+        private final int[] capacity;
+        private final int[] iterator;
+        private final int[] kept;
+        private final int firstSinkEdge;
+        private int edges;
+
+        FlowNetwork(int modules, int lecturers, List<int[]> eligible, int[] kept) {
+            this.modules = modules;
+            this.kept = kept;
+            int nodes = modules + lecturers + 2;
+            source = nodes - 2;
+            sink = nodes - 1;
+
+            int edgeCount = modules + lecturers;
+            for (int[] e : eligible) edgeCount += e.length;
+            head = new int[nodes];
+            level = new int[nodes];
+            iterator = new int[nodes];
+            next = new int[2 * edgeCount];
+            to = new int[2 * edgeCount];
+            capacity = new int[2 * edgeCount];
+            Arrays.fill(head, -1);
+
+            for (int m = 0; m < modules; m++) {
+                addEdge(source, m, 1);
+            }
+            for (int m = 0; m < modules; m++) {
+                for (int l : eligible.get(m)) addEdge(m, modules + l, 1);
+            }
+            firstSinkEdge = edges;
+            for (int l = 0; l < lecturers; l++) {
+                addEdge(modules + l, sink, 0);
+            }
+        }
+
+        private void addEdge(int from, int target, int cap) {
+            to[edges] = target;
+            capacity[edges] = cap;
+            next[edges] = head[from];
+            head[from] = edges++;
+
+            to[edges] = from;
+            capacity[edges] = 0;
+            next[edges] = head[target];
+            head[target] = edges++;
+        }
+
+        /**
+         * Raises every lecturer to sink edge to the new cap, keeping the flow already sent.
+         * Modules a lecturer kept from before use up part of the cap.
+         */
+        void setLecturerCapacity(int cap) {
+            for (int e = firstSinkEdge; e < edges; e += 2) {
+                int used = capacity[e + 1] + kept[(e - firstSinkEdge) / 2];
+                capacity[e] = Math.max(0, cap - used);
+            }
+        }
+
+        /** Sends as much extra flow as possible and returns how much was added. */
+        int maxFlow() {
+            int total = 0;
+            while (buildLevels()) {
+                System.arraycopy(head, 0, iterator, 0, head.length);
+                int pushed;
+                while ((pushed = push(source, Integer.MAX_VALUE)) > 0) {
+                    total += pushed;
+                }
+            }
+            return total;
+        }
+
+        private boolean buildLevels() {
+            Arrays.fill(level, -1);
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            level[source] = 0;
+            queue.add(source);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int e = head[node]; e >= 0; e = next[e]) {
+                    if (capacity[e] > 0 && level[to[e]] < 0) {
+                        level[to[e]] = level[node] + 1;
+                        queue.add(to[e]);
+                    }
+                }
+            }
+            return level[sink] >= 0;
+        }
+
+        /** Depth first search for one augmenting path along the level graph. */
+        private int push(int node, int limit) {
+            if (node == sink) return limit;
+            for (; iterator[node] >= 0; iterator[node] = next[iterator[node]]) {
+                int e = iterator[node];
+                if (capacity[e] <= 0 || level[to[e]] != level[node] + 1) continue;
+                int pushed = push(to[e], Math.min(limit, capacity[e]));
+                if (pushed > 0) {
+                    capacity[e] -= pushed;
+                    capacity[e ^ 1] += pushed;
+                    return pushed;
+                }
+            }
+            return 0;
+        }
+
+        /** Finds the lecturer a module's flow goes to. */
+        int assignedLecturer(int module) {
+            for (int e = head[module]; e >= 0; e = next[e]) {
+                if (to[e] >= modules && to[e] < source && capacity[e] == 0 && (e & 1) == 0) {
+                    return to[e] - modules;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+import Model.Room.Room;
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.Timeslot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Improves a feasible timetable with simulated annealing.
+ *
+ * The hard rules (room, lecturer and group clashes) are never broken. The optimiser
+ * lowers a penalty score made of three soft goals:
+ * - idle hours between a student group's first and last session of a day
+ * - lecturer hours above MAX_LECTURER_HOURS on a day
+ * - sessions starting at or after FRIDAY_LATE_HOUR on a Friday
+ *
+ * Each move either moves one session to another slot or swaps the slots of two sessions.
+ * Only the (group, day) and (lecturer, day) terms touched by a move are re-scored, so a
+ * move costs the same no matter how big the timetable is.
+ */
+public class LocalSearchOptimiser {
+
+    public static final int MAX_LECTURER_HOURS = 4;
+    public static final int FRIDAY_LATE_HOUR = 16;
+
+    private static final int GAP_WEIGHT = 3;
+    private static final int LECTURER_WEIGHT = 2;
+    private static final int FRIDAY_WEIGHT = 1;
+
+    private static final int DAYS = OccupancyGrid.DAYS.length;
+    private static final int HOURS = OccupancyGrid.HOURS_PER_DAY;
+    private static final long DAY_MASK = (1L << HOURS) - 1;
+    private static final int ROOM_TRIES = 4;
+
+    private final List<Room> rooms;
+
+    /**
+     * Creates an optimiser that may move sessions into any of the given rooms.
+     *
+     * @param rooms the rooms available for sessions
+     */
+    public LocalSearchOptimiser(List<Room> rooms) {
+        this.rooms = rooms;
+    }
+
+    /**
+     * Scores a timetable from scratch. Lower is better.
+     *
+     * @param sessions the timetable to score
+     * @return the soft constraint penalty
+     */
+    public int score(List<ScheduledSession> sessions) {
+        return new Search(sessions, 0L).total();
+    }
+
+    /**
+     * Runs simulated annealing over the timetable.
+     *
+     * @param sessions the feasible timetable to improve
+     * @param moves    how many moves to try
+     * @param seed     the random seed
+     * @return the best timetable found, never worse than the input
+     */
+    public List<ScheduledSession> optimise(List<ScheduledSession> sessions, long moves, long seed) {
+        Search search = new Search(sessions, seed);
+        search.anneal(moves, 0L);
+        return search.best();
+    }
+
+    /**
+     * Runs simulated annealing until a deadline or until the thread is interrupted.
+     * The temperature is lowered by how much of the time has been used.
+     *
+     * @param sessions       the feasible timetable to improve
+     * @param seed           the random seed
+     * @param deadlineNanos  the System.nanoTime value to stop at
+     * @return the best timetable found, never worse than the input
+     */
+    public List<ScheduledSession> optimiseUntil(List<ScheduledSession> sessions, long seed, long deadlineNanos) {
+        Search search = new Search(sessions, seed);
+        search.anneal(Long.MAX_VALUE, deadlineNanos);
+        return search.best();
+    }
+
+    /** The state of one optimisation run. */
+    private class Search {
+
+        private final Random random;
+        private final List<ScheduledSession> input;
+
+        // session data, only one hour sessions inside the week are movable
+        private final List<Integer> movable = new ArrayList<>();
+        private int[] slot;
+        private int[] room;
+        private int[] lecturer;
+        private int[] group;
+        private int[] view;        // student view for a named group session, -1 for ALL
+        private int[] cohort;
+        private int[][] roomClass;
+        private int[] startSlot;
+        private int[] startRoom;
+        private int[] bestSlot;
+        private int[] bestRoom;
+
+        // hard rule bitsets
+        private long[] roomBusy;
+        private long[] lecturerBusy;
+        private long[] groupBusy;
+
+        // soft rule bitsets
+        private long[] cohortAll;
+        private long[] viewNamed;
+        private int[] viewCohort;
+        private List<List<Integer>> cohortViews;
+
+        private int[] viewDayStamp;
+        private int[] lecturerDayStamp;
+        private int stamp;
+
+        private int current;
+        private int bestScore;
+
+        Search(List<ScheduledSession> sessions, long seed) {
+            this.random = new Random(seed);
+            this.input = sessions;
+            index();
+        }
+
+        private void index() {
+            int n = input.size();
+            slot = new int[n];
+            room = new int[n];
+            lecturer = new int[n];
+            group = new int[n];
+            view = new int[n];
+            cohort = new int[n];
+            roomClass = new int[n][];
+
+            Map<Room, Integer> roomIds = new HashMap<>();
+            for (int r = 0; r < rooms.size(); r++) roomIds.put(rooms.get(r), r);
+            Map<Lecturer, Integer> lecturerIds = new HashMap<>();
+            Map<String, Integer> groupIds = new HashMap<>();
+            Map<String, Integer> cohortIds = new HashMap<>();
+            Map<String, Integer> viewIds = new HashMap<>();
+            Map<String, int[]> classes = new HashMap<>();
+            List<Integer> viewCohorts = new ArrayList<>();
+
+            for (int i = 0; i < n; i++) {
+                ScheduledSession s = input.get(i);
+                Module m = s.getModule();
+                Timeslot t = s.getTimeslot();
+                int day = t == null ? -1 : OccupancyGrid.dayIndex(t.getDay());
+                boolean inWeek = day >= 0 && t.getStartHour() >= OccupancyGrid.START_HOUR
+                        && t.getStartHour() + t.getDuration() <= OccupancyGrid.END_HOUR;
+
+                slot[i] = inWeek ? OccupancyGrid.slot(day, t.getStartHour()) : -1;
+                room[i] = s.getRoom() == null ? -1 : roomIds.getOrDefault(s.getRoom(), -1);
+                lecturer[i] = s.getLecturer() == null ? -1
+                        : lecturerIds.computeIfAbsent(s.getLecturer(), k -> lecturerIds.size());
+
+                String cohortKey = m == null ? "?" : m.getProgrammeId().toUpperCase() + "/" + m.getYear() + "/" + m.getSemester();
+                cohort[i] = cohortIds.computeIfAbsent(cohortKey, k -> cohortIds.size());
+
+                String groupId = s.getGroupId();
+                if (groupId == null || groupId.equalsIgnoreCase("ALL")) {
+                    group[i] = groupIds.computeIfAbsent("ALL/" + cohortKey, k -> groupIds.size());
+                    view[i] = -1;
+                } else {
+                    group[i] = groupIds.computeIfAbsent(groupId.toUpperCase(), k -> groupIds.size());
+                    int c = cohort[i];
+                    view[i] = viewIds.computeIfAbsent(cohortKey + "/" + groupId.toUpperCase(), k -> {
+                        viewCohorts.add(c);
+                        return viewIds.size();
+                    });
+                }
+
+                boolean fixed = slot[i] < 0 || t.getDuration() != 1 || room[i] < 0 || lecturer[i] < 0 || m == null;
+                if (!fixed) {
+                    movable.add(i);
+                    boolean lab = s.getRoom().isLab();
+                    int capacity = (groupId == null || groupId.equalsIgnoreCase("ALL")) ? 60 : 30;
+                    roomClass[i] = classes.computeIfAbsent(lab + "/" + capacity, k -> suitableRooms(lab, capacity));
+                }
+            }
+
+            // cohorts without named groups still need one view for their students
+            int cohorts = cohortIds.size();
+            boolean[] hasView = new boolean[cohorts];
+            for (int c : viewCohorts) hasView[c] = true;
+            for (int c = 0; c < cohorts; c++) {
+                if (!hasView[c]) viewCohorts.add(c);
+            }
+
+            viewCohort = viewCohorts.stream().mapToInt(Integer::intValue).toArray();
+            cohortViews = new ArrayList<>();
+            for (int c = 0; c < cohorts; c++) cohortViews.add(new ArrayList<>());
+            for (int v = 0; v < viewCohort.length; v++) cohortViews.get(viewCohort[v]).add(v);
+
+            roomBusy = new long[rooms.size()];
+            lecturerBusy = new long[lecturerIds.size()];
+            groupBusy = new long[groupIds.size()];
+            cohortAll = new long[cohorts];
+            viewNamed = new long[viewCohort.length];
+            viewDayStamp = new int[viewCohort.length * DAYS];
+            lecturerDayStamp = new int[lecturerIds.size() * DAYS];
+
+            for (int i = 0; i < n; i++) {
+                if (slot[i] >= 0) book(i, OccupancyGrid.mask(input.get(i).getTimeslot()), true);
+            }
+
+            current = total();
+            bestScore = current;
+            startSlot = slot.clone();
+            startRoom = room.clone();
+            bestSlot = slot.clone();
+            bestRoom = room.clone();
+        }
+
+        /** The full score, only used at the start. */
+        int total() {
+            int score = 0;
+            for (int v = 0; v < viewCohort.length; v++) {
+                for (int d = 0; d < DAYS; d++) score += viewDayCost(v, d);
+            }
+            for (int l = 0; l < lecturerBusy.length; l++) {
+                for (int d = 0; d < DAYS; d++) score += lecturerDayCost(l, d);
+            }
+            for (int i = 0; i < slot.length; i++) score += fridayCost(i, slot[i]);
+            return score;
+        }
+
+        /**
+         * Runs the annealing loop for a number of moves, or until the deadline
+         * if one is given (deadlineNanos != 0).
+         */
+        void anneal(long moves, long deadlineNanos) {
+            if (movable.isEmpty()) return;
+
+            double start = Math.max(1.0, current / 20.0);
+            double temperature = start;
+            double cooling = Math.pow(0.01 / start, 1.0 / Math.max(1, moves));
+            long startNanos = System.nanoTime();
+
+            for (long step = 0; step < moves; step++) {
+                if (deadlineNanos != 0 && (step & 1023) == 0) {
+                    long now = System.nanoTime();
+                    if (now - deadlineNanos >= 0 || Thread.currentThread().isInterrupted()) break;
+                    double used = (double) (now - startNanos) / (deadlineNanos - startNanos);
+                    temperature = start * Math.pow(0.01 / start, used);
+                }
+
+                int delta = random.nextBoolean() ? tryMove() : trySwap();
+                if (delta != Integer.MIN_VALUE) {
+                    if (delta > 0 && random.nextDouble() >= Math.exp(-delta / temperature)) {
+                        undo();
+                    } else {
+                        current += delta;
+                        if (current < bestScore) {
+                            bestScore = current;
+                            System.arraycopy(slot, 0, bestSlot, 0, slot.length);
+                            System.arraycopy(room, 0, bestRoom, 0, room.length);
+                        }
+                    }
+                }
+                if (deadlineNanos == 0) temperature *= cooling;
+            }
+        }
+
+        // the last applied move, so it can be undone
+        private int moveA = -1, moveB = -1, oldSlotA, oldRoomA;
+
+        /** Moves one session to a random slot. Returns the score change or MIN_VALUE if not possible. */
+        private int tryMove() {
+            int i = movable.get(random.nextInt(movable.size()));
+            int target = random.nextInt(OccupancyGrid.SLOTS);
+            if (target == slot[i]) return Integer.MIN_VALUE;
+
+            long bit = 1L << target;
+            if ((lecturerBusy[lecturer[i]] & bit) != 0 || (groupBusy[group[i]] & bit) != 0) return Integer.MIN_VALUE;
+            int newRoom = freeRoom(i, bit);
+            if (newRoom < 0) return Integer.MIN_VALUE;
+
+            int before = startDelta(i, -1, target, -1);
+            moveA = i;
+            moveB = -1;
+            oldSlotA = slot[i];
+            oldRoomA = room[i];
+            relocate(i, target, newRoom);
+            return affectedCost() - before;
+        }
+
+        /** Swaps the slots of two sessions, each keeps its room. */
+        private int trySwap() {
+            int i = movable.get(random.nextInt(movable.size()));
+            int j = movable.get(random.nextInt(movable.size()));
+            int a = slot[i], b = slot[j];
+            if (i == j || a == b) return Integer.MIN_VALUE;
+
+            book(i, 1L << a, false);
+            book(j, 1L << b, false);
+            boolean ok = fits(i, b) && fits(j, a);
+            book(i, 1L << a, true);
+            book(j, 1L << b, true);
+            if (!ok) return Integer.MIN_VALUE;
+
+            int before = startDelta(i, j, b, a);
+            moveA = i;
+            moveB = j;
+            swapSlots(i, j);
+            return affectedCost() - before;
+        }
+
+        private boolean fits(int i, int target) {
+            long bit = 1L << target;
+            return (roomBusy[room[i]] & bit) == 0
+                    && (lecturerBusy[lecturer[i]] & bit) == 0
+                    && (groupBusy[group[i]] & bit) == 0;
+        }
+
+        private void undo() {
+            if (moveB >= 0) {
+                swapSlots(moveA, moveB);
+            } else {
+                relocate(moveA, oldSlotA, oldRoomA);
+            }
+        }
+
+        /** Picks a free room for a session: its own room if possible, otherwise a few random ones. */
+        private int freeRoom(int i, long bit) {
+            if ((roomBusy[room[i]] & bit) == 0) return room[i];
+            int[] candidates = roomClass[i];
+            if (candidates.length == 0) return -1;
+            for (int k = 0; k < ROOM_TRIES; k++) {
+                int r = candidates[random.nextInt(candidates.length)];
+                if ((roomBusy[r] & bit) == 0) return r;
+            }
+            return -1;
+        }
+
+        /**
+         * Swaps the slots of two sessions. Both are taken off the grid first because
+         * they may share a room, lecturer or group and the bitsets do not count bookings.
+         */
+        private void swapSlots(int i, int j) {
+            book(i, 1L << slot[i], false);
+            book(j, 1L << slot[j], false);
+            int a = slot[i];
+            slot[i] = slot[j];
+            slot[j] = a;
+            book(i, 1L << slot[i], true);
+            book(j, 1L << slot[j], true);
+        }
+
+        private void relocate(int i, int target, int newRoom) {
+            book(i, 1L << slot[i], false);
+            slot[i] = target;
+            room[i] = newRoom;
+            book(i, 1L << target, true);
+        }
+
+        private void book(int i, long mask, boolean on) {
+            if (room[i] >= 0) roomBusy[room[i]] = on ? roomBusy[room[i]] | mask : roomBusy[room[i]] & ~mask;
+            if (lecturer[i] >= 0) lecturerBusy[lecturer[i]] = on ? lecturerBusy[lecturer[i]] | mask : lecturerBusy[lecturer[i]] & ~mask;
+            groupBusy[group[i]] = on ? groupBusy[group[i]] | mask : groupBusy[group[i]] & ~mask;
+            if (view[i] < 0) {
+                cohortAll[cohort[i]] = on ? cohortAll[cohort[i]] | mask : cohortAll[cohort[i]] & ~mask;
+            } else {
+                viewNamed[view[i]] = on ? viewNamed[view[i]] | mask : viewNamed[view[i]] & ~mask;
+            }
+        }
+
+        // terms touched by the current move, collected by startDelta and re-scored by affectedCost
+        private final List<Integer> touchedViewDays = new ArrayList<>();
+        private final List<Integer> touchedLecturerDays = new ArrayList<>();
+        private final int[] touchedSessions = new int[2];
+        private int touchedCount;
+
+        /**
+         * Records every term a move will change and returns their cost before the move.
+         * Session i goes to slot si and session j (if not -1) goes to slot sj.
+         */
+        private int startDelta(int i, int j, int si, int sj) {
+            stamp++;
+            touchedViewDays.clear();
+            touchedLecturerDays.clear();
+            touchedCount = 0;
+            touch(i, si);
+            if (j >= 0) touch(j, sj);
+            return affectedCost();
+        }
+
+        private void touch(int i, int target) {
+            touchedSessions[touchedCount++] = i;
+            touchDay(i, slot[i] / HOURS);
+            touchDay(i, target / HOURS);
+        }
+
+        private void touchDay(int i, int day) {
+            if (view[i] < 0) {
+                for (int v : cohortViews.get(cohort[i])) touchViewDay(v, day);
+            } else {
+                touchViewDay(view[i], day);
+            }
+            int key = lecturer[i] * DAYS + day;
+            if (lecturerDayStamp[key] != stamp) {
+                lecturerDayStamp[key] = stamp;
+                touchedLecturerDays.add(key);
+            }
+        }
+
+        private void touchViewDay(int v, int day) {
+            int key = v * DAYS + day;
+            if (viewDayStamp[key] != stamp) {
+                viewDayStamp[key] = stamp;
+                touchedViewDays.add(key);
+            }
+        }
+
+        /** Cost of just the terms touched by the current move. */
+        private int affectedCost() {
+            int cost = 0;
+            for (int key : touchedViewDays) cost += viewDayCost(key / DAYS, key % DAYS);
+            for (int key : touchedLecturerDays) cost += lecturerDayCost(key / DAYS, key % DAYS);
+            for (int k = 0; k < touchedCount; k++) {
+                cost += fridayCost(touchedSessions[k], slot[touchedSessions[k]]);
+            }
+            return cost;
+        }
+
+        private int viewDayCost(int v, int day) {
+            long mask = cohortAll[viewCohort[v]] | viewNamed[v];
+            long hours = (mask >>> (day * HOURS)) & DAY_MASK;
+            if (hours == 0) return 0;
+            int first = Long.numberOfTrailingZeros(hours);
+            int last = 63 - Long.numberOfLeadingZeros(hours);
+            return GAP_WEIGHT * (last - first + 1 - Long.bitCount(hours));
+        }
+
+        private int lecturerDayCost(int l, int day) {
+            int hours = Long.bitCount((lecturerBusy[l] >>> (day * HOURS)) & DAY_MASK);
+            return LECTURER_WEIGHT * Math.max(0, hours - MAX_LECTURER_HOURS);
+        }
+
+        private int fridayCost(int i, int s) {
+            if (s < 0) return 0;
+            boolean late = s / HOURS == DAYS - 1 && OccupancyGrid.START_HOUR + s % HOURS >= FRIDAY_LATE_HOUR;
+            return late ? FRIDAY_WEIGHT : 0;
+        }
+
+        /** Builds the best timetable seen, reusing the original session objects that did not move. */
+        List<ScheduledSession> best() {
+            List<ScheduledSession> result = new ArrayList<>(input.size());
+
+            for (int i = 0; i < input.size(); i++) {
+                ScheduledSession s = input.get(i);
+                if (bestSlot[i] == startSlot[i] && bestRoom[i] == startRoom[i]) {
+                    result.add(s);
+                    continue;
+                }
+                ScheduledSession moved = new ScheduledSession(s.getModule(), s.getLecturer(), rooms.get(bestRoom[i]),
+                        OccupancyGrid.timeslot(bestSlot[i]), s.getGroupId());
+                moved.setSessionId(s.getSessionId());
+                result.add(moved);
+            }
+            return result;
+        }
+    }
+
+    /** Gets the indexes of the rooms of the right type and size. */
+    private int[] suitableRooms(boolean lab, int capacity) {
+        List<Integer> result = new ArrayList<>();
+        for (int r = 0; r < rooms.size(); r++) {
+            Room room = rooms.get(r);
+            if (room.isLab() == lab && room.getCapacity() >= capacity) result.add(r);
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
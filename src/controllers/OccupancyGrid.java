@@ -0,0 +1,283 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+import Model.Room.Room;
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.Timeslot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of which teaching hours are already taken by each room, lecturer
+ * and student group so the generator can test a placement in constant time.
+ *
+ * The teaching week (5 days x 9 hours) fits into a single long, so every resource
+ * is stored as a bitset where bit (dayIndex * HOURS_PER_DAY + hour - START_HOUR)
+ * is set when that hour is booked.
+ *
+ * Rooms, lecturers and groups are given a number the first time they are seen so the
+ * placement loop can work on plain int/long values without creating any objects.
+ *
+ * The conflict rules are the same as ScheduledSession.sameTimeWith plus the
+ * programme/year/semester rule used by the generator:
+ * - the same room or lecturer can not be used twice in one hour
+ * - a named group (e.g. G1) can not have two sessions in one hour
+ * - a programme/year/semester can not have two "ALL" sessions in one hour
+ */
+public class OccupancyGrid {
+
+    public static final String[] DAYS = {"MON", "TUE", "WED", "THU", "FRI"};
+    public static final int START_HOUR = 9;
+    public static final int END_HOUR = 18; // last start is 17
+    public static final int HOURS_PER_DAY = END_HOUR - START_HOUR;
+    public static final int SLOTS = DAYS.length * HOURS_PER_DAY;
+
+    private static final Timeslot[] HOURLY = new Timeslot[SLOTS];
+
+    static {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            HOURLY[slot] = new Timeslot(DAYS[slot / HOURS_PER_DAY], START_HOUR + slot % HOURS_PER_DAY, 1);
+        }
+    }
+
+    private final Map<Room, Integer> roomIds = new HashMap<>();
+    private final Map<Lecturer, Integer> lecturerIds = new HashMap<>();
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private long[] roomBusy = new long[16];
+    private long[] lecturerBusy = new long[16];
+    private long[] groupBusy = new long[16];
+
+    /**
+     * Converts a day name into its position in the week.
+     *
+     * @param day the day e.g. "MON"
+     * @return 0 to 4, or -1 if the day is not a teaching day
+     */
+    public static int dayIndex(String day) {
+        if (day == null) return -1;
+        for (int i = 0; i < DAYS.length; i++) {
+            if (DAYS[i].equalsIgnoreCase(day)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the slot number for a day and start hour.
+     *
+     * @param dayIndex the day position (0 = MON)
+     * @param hour     the start hour
+     * @return the slot number used as a bit position
+     */
+    public static int slot(int dayIndex, int hour) {
+        return dayIndex * HOURS_PER_DAY + (hour - START_HOUR);
+    }
+
+    /**
+     * Builds the bit mask covering every hour of a timeslot.
+     * Hours outside the teaching week are ignored.
+     *
+     * @param timeslot the timeslot
+     * @return the mask of booked slots, 0 if nothing falls inside the week
+     */
+    public static long mask(Timeslot timeslot) {
+        if (timeslot == null) return 0L;
+        int day = dayIndex(timeslot.getDay());
+        if (day < 0) return 0L;
+
+        long mask = 0L;
+        int end = timeslot.getStartHour() + timeslot.getDuration();
+        for (int h = Math.max(timeslot.getStartHour(), START_HOUR); h < Math.min(end, END_HOUR); h++) {
+            mask |= 1L << slot(day, h);
+        }
+        return mask;
+    }
+
+    /**
+     * Gets the shared one hour Timeslot for a slot. Timeslots can not be changed,
+     * so the same 45 objects are reused by every generated session.
+     *
+     * @param slot the slot number
+     * @return the one hour timeslot starting at that slot
+     */
+    public static Timeslot timeslot(int slot) {
+        return HOURLY[slot];
+    }
+
+    /**
+     * Gets the number used for a room, giving it one if it is new.
+     *
+     * @param room the room, may be null
+     * @return the room number, or -1 for no room
+     */
+    public int roomIndex(Room room) {
+        if (room == null) return -1;
+        Integer id = roomIds.get(room);
+        if (id == null) {
+            id = roomIds.size();
+            roomIds.put(room, id);
+            roomBusy = ensureSize(roomBusy, id);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the number used for a lecturer, giving them one if they are new.
+     *
+     * @param lecturer the lecturer, may be null
+     * @return the lecturer number, or -1 for no lecturer
+     */
+    public int lecturerIndex(Lecturer lecturer) {
+        if (lecturer == null) return -1;
+        Integer id = lecturerIds.get(lecturer);
+        if (id == null) {
+            id = lecturerIds.size();
+            lecturerIds.put(lecturer, id);
+            lecturerBusy = ensureSize(lecturerBusy, id);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the number used for the students a session is for.
+     * A named group (e.g. G1) is shared by every module, while "ALL"
+     * belongs to the module's programme, year and semester.
+     *
+     * @param module  the module being taught
+     * @param groupId the student group
+     * @return the group number, or -1 if the session has no group rule
+     */
+    public int groupIndex(Module module, String groupId) {
+        String key;
+        if (isAllGroup(groupId)) {
+            if (module == null || module.getProgrammeId() == null) return -1;
+            key = "ALL/" + module.getProgrammeId().toUpperCase() + "/" + module.getYear() + "/" + module.getSemester();
+        } else {
+            key = groupId.toUpperCase();
+        }
+
+        Integer id = groupIds.get(key);
+        if (id == null) {
+            id = groupIds.size();
+            groupIds.put(key, id);
+            groupBusy = ensureSize(groupBusy, id);
+        }
+        return id;
+    }
+
+    /**
+     * Checks whether numbered resources are free for the given slots.
+     *
+     * @param room     the room number, or -1
+     * @param lecturer the lecturer number, or -1
+     * @param group    the group number, or -1
+     * @param mask     the slots to check
+     * @return true if none of them are busy
+     */
+    public boolean isFree(int room, int lecturer, int group, long mask) {
+        return (room < 0 || (roomBusy[room] & mask) == 0)
+                && (lecturer < 0 || (lecturerBusy[lecturer] & mask) == 0)
+                && (group < 0 || (groupBusy[group] & mask) == 0);
+    }
+
+    /**
+     * Checks whether a room is free for the given slots.
+     *
+     * @param room the room number
+     * @param mask the slots to check
+     * @return true if the room is free
+     */
+    public boolean isRoomFree(int room, long mask) {
+        return (roomBusy[room] & mask) == 0;
+    }
+
+    /**
+     * Marks numbered resources as busy for the given slots.
+     *
+     * @param room     the room number, or -1
+     * @param lecturer the lecturer number, or -1
+     * @param group    the group number, or -1
+     * @param mask     the slots to book
+     */
+    public void book(int room, int lecturer, int group, long mask) {
+        if (room >= 0) roomBusy[room] |= mask;
+        if (lecturer >= 0) lecturerBusy[lecturer] |= mask;
+        if (group >= 0) groupBusy[group] |= mask;
+    }
+
+    /**
+     * Marks numbered resources as free for the given slots.
+     *
+     * @param room     the room number, or -1
+     * @param lecturer the lecturer number, or -1
+     * @param group    the group number, or -1
+     * @param mask     the slots to free
+     */
+    public void release(int room, int lecturer, int group, long mask) {
+        if (room >= 0) roomBusy[room] &= ~mask;
+        if (lecturer >= 0) lecturerBusy[lecturer] &= ~mask;
+        if (group >= 0) groupBusy[group] &= ~mask;
+    }
+
+    /**
+     * Checks whether a session could be booked for the given slots.
+     *
+     * @param module   the module being taught
+     * @param lecturer the lecturer
+     * @param room     the room
+     * @param groupId  the student group
+     * @param mask     the slots the session would take
+     * @return true if none of the resources are busy in those slots
+     */
+    public boolean isFree(Module module, Lecturer lecturer, Room room, String groupId, long mask) {
+        return isFree(roomIndex(room), lecturerIndex(lecturer), groupIndex(module, groupId), mask);
+    }
+
+    /**
+     * Checks whether a session can be added without any conflicts.
+     *
+     * @param session the candidate session
+     * @return true if the session fits
+     */
+    public boolean canPlace(ScheduledSession session) {
+        return isFree(session.getModule(), session.getLecturer(), session.getRoom(),
+                session.getGroupId(), mask(session.getTimeslot()));
+    }
+
+    /**
+     * Marks the slots of a session as taken for its room, lecturer and group.
+     *
+     * @param session the session being committed
+     */
+    public void place(ScheduledSession session) {
+        book(roomIndex(session.getRoom()), lecturerIndex(session.getLecturer()),
+                groupIndex(session.getModule(), session.getGroupId()), mask(session.getTimeslot()));
+    }
+
+    /**
+     * Frees the slots of a session that was previously placed.
+     *
+     * @param session the session being removed
+     */
+    public void remove(ScheduledSession session) {
+        release(roomIndex(session.getRoom()), lecturerIndex(session.getLecturer()),
+                groupIndex(session.getModule(), session.getGroupId()), mask(session.getTimeslot()));
+    }
+
+    /** Removes every booking but keeps the numbers given to rooms, lecturers and groups. */
+    public void clear() {
+        Arrays.fill(roomBusy, 0L);
+        Arrays.fill(lecturerBusy, 0L);
+        Arrays.fill(groupBusy, 0L);
+    }
+
+    private static long[] ensureSize(long[] bits, int index) {
+        return index < bits.length ? bits : Arrays.copyOf(bits, Math.max(index + 1, bits.length * 2));
+    }
+
+    private static boolean isAllGroup(String groupId) {
+        return groupId == null || groupId.equalsIgnoreCase("ALL");
+    }
+}
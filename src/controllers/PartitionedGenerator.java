@@ -0,0 +1,314 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+import Model.Room.Room;
+import Model.Room.RoomIndex;
+import Model.Timetable.ScheduledSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Generates a timetable by splitting the modules into programme/year/semester cohorts
+ * and placing each cohort on its own thread.
+ *
+ * A cohort's "ALL" sessions can only clash with the same cohort, so they are checked
+ * against a bitset owned by that cohort. Rooms, lecturers and named groups (which
+ * clash across the whole timetable, the same as ScheduledSession.sameTimeWith) are
+ * shared through a ReservationTable, so the merged timetable follows the same rules
+ * as a single threaded run.
+ *
+ * The work is done in rounds. In each round every cohort with hours left places them
+ * on its own copy of the shared table, in parallel. The proposed bookings are then
+ * added to the shared table one cohort at a time, in module order, and any booking
+ * that clashes with an earlier cohort's goes back to its cohort for the next round.
+ * The first cohort in a round never loses a booking, so there are at most as many
+ * rounds as cohorts. Nothing depends on thread timing, so the same seed always gives
+ * the same timetable whatever the number of threads.
+ */
+public class PartitionedGenerator {
+
+    private static final int DAYS = OccupancyGrid.DAYS.length;
+    private static final int HOURS = OccupancyGrid.HOURS_PER_DAY;
+
+    private final List<Room> rooms;
+    private final RoomIndex roomIndex;
+
+    /**
+     * Creates a partitioned generator.
+     *
+     * @param rooms     every room
+     * @param roomIndex the rooms sorted by type and capacity. Rooms in the index that
+     *                  are not in the list are never used.
+     */
+    public PartitionedGenerator(List<Room> rooms, RoomIndex roomIndex) {
+        this.rooms = rooms;
+        this.roomIndex = roomIndex;
+    }
+
+    /**
+     * Places every request, solving each cohort in parallel.
+     *
+     * @param requests the hours to place
+     * @param seed     the seed used to give every cohort its own random generator
+     * @param threads  how many threads to use
+     * @return the merged timetable
+     */
+    public GenerationResult generate(List<PlacementRequest> requests, long seed, int threads) {
+        Map<String, List<PlacementRequest>> partitions = new LinkedHashMap<>();
+        Map<Lecturer, Integer> lecturerIds = new HashMap<>();
+        Map<String, Integer> groupIds = new HashMap<>();
+        for (PlacementRequest request : requests) {
+            partitions.computeIfAbsent(cohortKey(request.getModule()), k -> new ArrayList<>()).add(request);
+            if (request.getLecturer() != null) {
+                lecturerIds.computeIfAbsent(request.getLecturer(), k -> lecturerIds.size());
+            }
+            if (!isAllGroup(request.getGroupId())) {
+                groupIds.computeIfAbsent(request.getGroupId().toUpperCase(), k -> groupIds.size());
+            }
+        }
+
+        Map<Room, Integer> roomIds = new IdentityHashMap<>();
+        for (int r = 0; r < rooms.size(); r++) roomIds.put(rooms.get(r), r);
+
+        ReservationTable table = new ReservationTable(rooms.size(), lecturerIds.size(), groupIds.size());
+        Random seeds = new Random(seed);
+        List<Cohort> cohorts = new ArrayList<>();
+        for (List<PlacementRequest> partition : partitions.values()) {
+            cohorts.add(new Cohort(partition, seeds.nextLong(), roomIds, lecturerIds, groupIds));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            while (true) {
+                List<Cohort> active = new ArrayList<>();
+                for (Cohort cohort : cohorts) {
+                    if (cohort.hasHoursLeft()) active.add(cohort);
+                }
+                if (active.isEmpty()) break;
+
+                // the shared table is only read while the cohorts propose, and only written below
+                List<ForkJoinTask<List<Booking>>> tasks = new ArrayList<>();
+                for (Cohort cohort : active) {
+                    tasks.add(pool.submit(() -> cohort.propose(table)));
+                }
+                List<List<Booking>> proposals = new ArrayList<>();
+                for (ForkJoinTask<List<Booking>> task : tasks) proposals.add(task.get());
+                for (int i = 0; i < active.size(); i++) {
+                    active.get(i).merge(proposals.get(i), table);
+                }
+            }
+
+            List<ScheduledSession> sessions = new ArrayList<>();
+            List<String> failures = new ArrayList<>();
+            int unplaced = 0;
+            long evaluations = 0;
+            for (Cohort cohort : cohorts) {
+                sessions.addAll(cohort.placed);
+                failures.addAll(cohort.failures);
+                unplaced += cohort.unplacedHours;
+                evaluations += cohort.evaluations;
+            }
+            return new GenerationResult(seed, sessions, failures, unplaced, evaluations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** One hour a cohort wants to book. */
+    private static class Booking {
+        final int request;
+        final int room;
+        final int slot;
+
+        Booking(int request, int room, int slot) {
+            this.request = request;
+            this.room = room;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Places the requests of one cohort. Only propose runs on a pool thread, and it
+     * reads the shared table without changing it.
+     */
+    private class Cohort {
+
+        private final List<PlacementRequest> requests;
+        private final Random random;
+        private final int[][] candidates;
+        private final int[] lecturers;
+        private final int[] groups;
+        private final int[] hoursLeft;
+        private final boolean[] failed;
+
+        private final List<ScheduledSession> placed = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+        private final int[] dayOrder = new int[DAYS];
+        private final int[] hourOrder = new int[HOURS];
+        private long allBusy;
+        private int unplacedHours;
+        private long evaluations;
+
+        Cohort(List<PlacementRequest> requests, long seed, Map<Room, Integer> roomIds,
+               Map<Lecturer, Integer> lecturerIds, Map<String, Integer> groupIds) {
+            this.requests = requests;
+            this.random = new Random(seed);
+            for (int d = 0; d < DAYS; d++) dayOrder[d] = d;
+            for (int h = 0; h < HOURS; h++) hourOrder[h] = h;
+
+            int n = requests.size();
+            candidates = new int[n][];
+            lecturers = new int[n];
+            groups = new int[n];
+            hoursLeft = new int[n];
+            failed = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                PlacementRequest request = requests.get(i);
+                if (request.getLecturer() == null) {
+                    fail(i, request.getHours());
+                    continue;
+                }
+                candidates[i] = roomNumbers(roomIndex.roomsWithCapacity(request.isLab(), request.requiredCapacity()),
+                        roomIds);
+                lecturers[i] = lecturerIds.get(request.getLecturer());
+                groups[i] = isAllGroup(request.getGroupId()) ? -1 : groupIds.get(request.getGroupId().toUpperCase());
+                hoursLeft[i] = request.getHours();
+            }
+        }
+
+        boolean hasHoursLeft() {
+            for (int left : hoursLeft) {
+                if (left > 0) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Places every hour left on a copy of the shared table. Hours that do not fit
+         * even there are reported as unplaced straight away.
+         *
+         * @param shared the bookings made by every cohort so far
+         * @return the bookings this cohort would like to make, in request order
+         */
+        List<Booking> propose(ReservationTable shared) {
+            ReservationTable own = new ReservationTable(shared);
+            long ownAllBusy = allBusy;
+            List<Booking> proposed = new ArrayList<>();
+
+            for (int i = 0; i < requests.size(); i++) {
+                for (int h = 0; h < hoursLeft[i]; h++) {
+                    Booking booking = placeOne(i, own, ownAllBusy);
+                    if (booking == null) {
+                        fail(i, hoursLeft[i] - h);
+                        break;
+                    }
+                    if (groups[i] < 0) ownAllBusy |= 1L << booking.slot;
+                    proposed.add(booking);
+                }
+                hoursLeft[i] = 0;
+            }
+            return proposed;
+        }
+
+        /**
+         * Books the proposed hours into the shared table. An hour an earlier cohort
+         * has taken in the meantime is tried again next round.
+         */
+        void merge(List<Booking> proposed, ReservationTable shared) {
+            for (Booking booking : proposed) {
+                int i = booking.request;
+                long bit = 1L << booking.slot;
+                if (!shared.tryReserve(booking.room, lecturers[i], groups[i], bit)) {
+                    hoursLeft[i]++;
+                    continue;
+                }
+                if (groups[i] < 0) allBusy |= bit;
+                PlacementRequest request = requests.get(i);
+                placed.add(new ScheduledSession(request.getModule(), request.getLecturer(),
+                        rooms.get(booking.room), OccupancyGrid.timeslot(booking.slot), request.getGroupId()));
+            }
+        }
+
+        private Booking placeOne(int i, ReservationTable own, long ownAllBusy) {
+            shuffle(dayOrder);
+            shuffle(hourOrder);
+            shuffle(candidates[i]);
+            boolean all = groups[i] < 0;
+
+            for (int day : dayOrder) {
+                for (int hour : hourOrder) {
+                    int slot = day * HOURS + hour;
+                    long bit = 1L << slot;
+
+                    evaluations++;
+                    if (all && (ownAllBusy & bit) != 0) continue;
+                    if (!own.isFree(lecturers[i], groups[i], bit)) continue;
+
+                    for (int room : candidates[i]) {
+                        evaluations++;
+                        if (own.tryReserve(room, lecturers[i], groups[i], bit)) {
+                            return new Booking(i, room, slot);
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        /** Reports a request once, however many rounds its hours fail in. */
+        private void fail(int i, int hours) {
+            unplacedHours += hours;
+            if (failed[i]) return;
+            failed[i] = true;
+            failures.add(requests.get(i).failureMessage());
+        }
+
+        private void shuffle(int[] values) {
+            for (int i = values.length; i > 1; i--) {
+                int j = random.nextInt(i);
+                int tmp = values[i - 1];
+                values[i - 1] = values[j];
+                values[j] = tmp;
+            }
+        }
+    }
+
+    /**
+     * Gets the numbers of the given rooms. A room index built before the room list
+     * last changed can hold rooms that are not in it any more, and those are left out.
+     */
+    private static int[] roomNumbers(List<Room> suitable, Map<Room, Integer> roomIds) {
+        int[] numbers = new int[suitable.size()];
+        int count = 0;
+        for (Room room : suitable) {
+            Integer number = roomIds.get(room);
+            if (number != null) numbers[count++] = number;
+        }
+        return Arrays.copyOf(numbers, count);
+    }
+
+    private static boolean isAllGroup(String groupId) {
+        return groupId == null || groupId.equalsIgnoreCase("ALL");
+    }
+
+    private static String cohortKey(Module m) {
+        String programme = m.getProgrammeId() == null ? "" : m.getProgrammeId().toUpperCase();
+        return programme + "/" + m.getYear() + "/" + m.getSemester();
+    }
+}
@@ -0,0 +1,74 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.People.Lecturer;
+
+/**
+ * Describes a block of teaching hours the generator has to place:
+ * the lecture, lab or tutorial hours of one module for one student group.
+ */
+public class PlacementRequest {
+
+    private final Module module;
+    private final Lecturer lecturer;
+    private final boolean lab;
+    private final String groupId;
+    private final int hours;
+
+    /**
+     * Creates a placement request.
+     *
+     * @param module   the module being taught
+     * @param lecturer the lecturer assigned, or null if none was found
+     * @param lab      true if the hours need a lab room
+     * @param groupId  the student group ("ALL", "G1", ...)
+     * @param hours    how many one hour sessions are needed
+     */
+    public PlacementRequest(Module module, Lecturer lecturer, boolean lab, String groupId, int hours) {
+        this.module = module;
+        this.lecturer = lecturer;
+        this.lab = lab;
+        this.groupId = groupId;
+        this.hours = hours;
+    }
+
+    public Module getModule() {
+        return module;
+    }
+
+    public Lecturer getLecturer() {
+        return lecturer;
+    }
+
+    public boolean isLab() {
+        return lab;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+
+    /**
+     * Gets the smallest room capacity the group needs.
+     * A whole class needs 60 seats and a single group needs 30.
+     *
+     * @return the required capacity
+     */
+    public int requiredCapacity() {
+        if (groupId == null || groupId.equalsIgnoreCase("ALL")) return 60;
+        return 30;
+    }
+
+    /**
+     * @return the message printed when these hours can not be placed
+     */
+    public String failureMessage() {
+        if (lecturer == null) return "No lecturer for " + module.getModuleCode();
+        return "Could not place " + module.getModuleCode()
+                + " (" + (lab ? "lab" : "class") + ", group " + groupId + ")";
+    }
+}
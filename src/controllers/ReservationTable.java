@@ -0,0 +1,72 @@
+package controllers;
+
+/**
+ * The OccupancyGrid bitsets for rooms, lecturers and groups that are shared between
+ * the cohorts of a PartitionedGenerator.
+ *
+ * The table itself is not thread safe. Each cohort thread books into its own copy,
+ * made from the shared table at the start of a round, and only the thread merging
+ * the rounds books into the shared table. That way no booking depends on which
+ * thread got there first.
+ */
+public class ReservationTable {
+
+    private final long[] rooms;
+    private final long[] lecturers;
+    private final long[] groups;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param roomCount     how many rooms there are
+     * @param lecturerCount how many lecturers there are
+     * @param groupCount    how many shared groups there are
+     */
+    public ReservationTable(int roomCount, int lecturerCount, int groupCount) {
+        rooms = new long[roomCount];
+        lecturers = new long[lecturerCount];
+        groups = new long[groupCount];
+    }
+
+    /**
+     * Creates a copy of a table. Bookings in the copy do not change the original.
+     *
+     * @param other the table to copy
+     */
+    public ReservationTable(ReservationTable other) {
+        rooms = other.rooms.clone();
+        lecturers = other.lecturers.clone();
+        groups = other.groups.clone();
+    }
+
+    /**
+     * Checks the lecturer and group without booking anything.
+     *
+     * @param lecturer the lecturer number, or -1
+     * @param group    the group number, or -1
+     * @param mask     the slots to check
+     * @return true if the lecturer and group are free
+     */
+    public boolean isFree(int lecturer, int group, long mask) {
+        return (lecturer < 0 || (lecturers[lecturer] & mask) == 0)
+                && (group < 0 || (groups[group] & mask) == 0);
+    }
+
+    /**
+     * Books a room, lecturer and group together. Either all three are booked
+     * or, if any of them is already taken, none are.
+     *
+     * @param room     the room number
+     * @param lecturer the lecturer number, or -1
+     * @param group    the group number, or -1
+     * @param mask     the slots to book
+     * @return true if the booking was made
+     */
+    public boolean tryReserve(int room, int lecturer, int group, long mask) {
+        if ((rooms[room] & mask) != 0 || !isFree(lecturer, group, mask)) return false;
+        rooms[room] |= mask;
+        if (lecturer >= 0) lecturers[lecturer] |= mask;
+        if (group >= 0) groups[group] |= mask;
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package controllers;
+
+import Model.Timetable.ScheduledSession;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Walks through a list of sessions one page at a time, writing each page
+ * straight to an Appendable (a Writer, PrintStream or StringBuilder).
+ *
+ * The list comes from a timetable snapshot, so it does not change while it is
+ * being paged and no page ever skips or repeats a session.
+ */
+public class SessionCursor {
+
+    private final List<ScheduledSession> sessions;
+    private final boolean withIds;
+    private int position;
+
+    /**
+     * Creates a cursor.
+     *
+     * @param sessions the sessions to page through
+     * @param offset   the first row to show
+     * @param withIds  true to put the session ID in front of each session
+     */
+    public SessionCursor(List<ScheduledSession> sessions, int offset, boolean withIds) {
+        this.sessions = sessions;
+        this.withIds = withIds;
+        this.position = Math.max(0, Math.min(offset, sessions.size()));
+    }
+
+    /**
+     * Writes the next page, one session per line.
+     *
+     * @param out   where to write
+     * @param limit the most sessions to write
+     * @return how many sessions were written
+     * @throws IOException if writing fails
+     */
+    public int nextPage(Appendable out, int limit) throws IOException {
+        int end = (int) Math.min((long) position + Math.max(0, limit), sessions.size());
+        int written = end - position;
+        for (; position < end; position++) {
+            ScheduledSession session = sessions.get(position);
+            if (withIds) out.append(Integer.toString(session.getSessionId())).append(": ");
+            session.appendTo(out);
+            out.append('\n');
+        }
+        return written;
+    }
+
+    /**
+     * @return true if there are sessions left to show
+     */
+    public boolean hasNext() {
+        return position < sessions.size();
+    }
+
+    /**
+     * @return the row the next page starts at, which can be used as the offset to resume later
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the number of sessions being paged
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,27 @@
+package controllers;
+
+import Model.Timetable.ScheduledSession;
+
+/**
+ * Receives scheduled sessions one at a time, for example as the generator places them.
+ * Implementations decide where the sessions go (a CSV file, ...), so the output can
+ * be written while the generator is still running.
+ *
+ * A sink only reads the sessions it is given. Session IDs are handed out by whoever
+ * creates the sessions.
+ */
+public interface SessionSink extends AutoCloseable {
+
+    /**
+     * Handles one session.
+     *
+     * @param session the session that was placed
+     */
+    void accept(ScheduledSession session);
+
+    /**
+     * Finishes writing. Nothing may be accepted after this.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,193 @@
+package controllers;
+
+import Model.Academic.Module;
+import Model.Timetable.ScheduledSession;
+import Model.Timetable.TimetableService;
+import Model.Timetable.TimetableSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the sorted student timetable of each (year, semester, group) so every
+ * student in that group shares one list instead of filtering the whole timetable.
+ *
+ * Only the groups a changed session belongs to are dropped: a named group session
+ * drops that group, an "ALL" session drops every group of its year and semester.
+ * If the timetable is loaded again everything is dropped. The least recently used
+ * entries are removed once there are more than the maximum.
+ */
+public class StudentTimetableCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final Comparator<ScheduledSession> BY_DAY_AND_HOUR = Comparator
+            .comparingInt((ScheduledSession s) -> dayOrder(s.getTimeslot().getDay()))
+            .thenComparingInt(s -> s.getTimeslot().getStartHour());
+
+    private final Map<String, List<ScheduledSession>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long changes;
+    private long loadVersion = -1;
+
+    /** Creates a cache holding up to DEFAULT_MAX_ENTRIES groups. */
+    public StudentTimetableCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the most groups to keep
+     */
+    public StudentTimetableCache(int maxEntries) {
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ScheduledSession>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the sessions for a group, sorted by day and start hour.
+     *
+     * @param service  where the current timetable is read from on a miss
+     * @param year     the academic year
+     * @param semester the semester number
+     * @param groupId  the student's group
+     * @return the sessions, read-only
+     */
+    public List<ScheduledSession> get(TimetableService service, int year, int semester, String groupId) {
+        String key = key(year, semester, groupId);
+        long changesBefore;
+        synchronized (this) {
+            changesBefore = changes;
+            TimetableSnapshot snapshot = service.snapshot();
+            if (snapshot.getLoadVersion() != loadVersion) {
+                entries.clear();
+                loadVersion = snapshot.getLoadVersion();
+            }
+            List<ScheduledSession> cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        // Read the snapshot after noting the change count, so a change published while
+        // the list is built stops it from being stored.
+        TimetableSnapshot snapshot = service.snapshot();
+        List<ScheduledSession> built = build(snapshot.getSessions(), year, semester, groupId);
+        synchronized (this) {
+            if (changes == changesBefore && snapshot.getLoadVersion() == loadVersion) {
+                entries.put(key, built);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Drops the groups a session belongs to. Call this after the session is added,
+     * removed or replaced.
+     *
+     * @param session the session that changed
+     */
+    public synchronized void invalidate(ScheduledSession session) {
+        changes++;
+        Module m = session.getModule();
+        if (m == null || session.getGroupId() == null) {
+            entries.clear();
+            return;
+        }
+        if (session.getGroupId().equalsIgnoreCase("ALL")) {
+            String prefix = m.getYear() + "/" + m.getSemester() + "/";
+            Iterator<String> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().startsWith(prefix)) keys.remove();
+            }
+        } else {
+            entries.remove(key(m.getYear(), m.getSemester(), session.getGroupId()));
+        }
+    }
+
+    /** Drops every group. */
+    public synchronized void clear() {
+        changes++;
+        entries.clear();
+    }
+
+    /**
+     * @return how many requests were answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return how many requests had to build the list
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return how many groups are stored
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static List<ScheduledSession> build(List<ScheduledSession> sessions, int year, int semester,
+                                                String groupId) {
+        List<ScheduledSession> matches = new ArrayList<>();
+        for (ScheduledSession session : sessions) {
+            if (attends(session, year, semester, groupId)) {
+                matches.add(session);
+            }
+        }
+        matches.sort(BY_DAY_AND_HOUR);
+        return Collections.unmodifiableList(matches);
+    }
+
+    /**
+     * @return true if a student of the year, semester and group attends the session
+     */
+    static boolean attends(ScheduledSession session, int year, int semester, String groupId) {
+        Module m = session.getModule();
+        if (m == null) return false;
+
+        boolean sameYear = (m.getYear() == year);
+        boolean sameSemester = (m.getSemester() == semester);
+        boolean groupMatches =
+                session.getGroupId().equalsIgnoreCase("ALL") ||
+                        session.getGroupId().equalsIgnoreCase(groupId);
+
+        return sameYear && sameSemester && groupMatches;
+    }
+
+    static String key(int year, int semester, String groupId) {
+        return year + "/" + semester + "/" + (groupId == null ? "" : groupId.toUpperCase());
+    }
+
+    /** Converts day names into numbers. */
+    private static int dayOrder(String day) {
+        if (day == null) return 99;
+        return switch (day.toUpperCase()) {
+            case "MON" -> 1;
+            case "TUE" -> 2;
+            case "WED" -> 3;
+            case "THU" -> 4;
+            case "FRI" -> 5;
+            default -> 99;
+        };
+    }
+}
@@ -1,26 +1,33 @@
 package controllers;
 
-import Model.People.Admin;
 import Model.People.Lecturer;
 import Model.People.Student;
+import Model.People.User;
 import Model.Timetable.ScheduledSession;
 import Model.Timetable.TimetableService;
 import Model.Room.Room;
 import Model.Academic.Module;
 import Model.Timetable.Timeslot;
 
-import java.util.Comparator;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * The TimetableController acts as the main controller for user actions.
  * It handles login, timetable queries, conflict checks and admin scheduling,
+ * Queries read the service's current snapshot, so they never wait for admin changes.
+ * Session IDs are kept by the service alongside the snapshot, so changes to
+ * different rooms, lecturers and groups go ahead in parallel.
  */
 public class TimetableController {
 
     private final TimetableService service;
     private final DataManager datamanager;
+    private final StudentTimetableCache studentCache = new StudentTimetableCache();
+    private final AvailabilityIndex availability = new AvailabilityIndex();
 
     /**
      * Creates a TimetableController with a timetable service and a data manager.
@@ -34,108 +41,108 @@ public class TimetableController {
     }
 
     /**
-     * Attempts to log a user in by checking their email and password
-     * against the stored student, lecturer and admin accounts.
+     * Attempts to log a user in by looking up their email (ignoring case)
+     * and checking the password.
      *
      * @param email     the email entered
      * @param password  the password entered
      * @return the matching user object, or null if the login fails
      */
     public Object login(String email, String password) {
-        for (Student s : datamanager.students) {
-            if (s.getEmail().equals(email) && s.getPassword().equals(password)) {
-                return s;
-            }
-        }
-
-        for (Lecturer l : datamanager.lecturers) {
-            if (l.getEmail().equals(email) && l.getPassword().equals(password)) {
-                return l;
-            }
-        }
-
-        for (Admin a : datamanager.admins) {
-            if (a.getEmail().equals(email) && a.getPassword().equals(password)) {
-                return a;
-            }
+        User user = datamanager.findUserByEmail(email);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
         }
         return null;
     }
 
     /**
-     * Gets the timetable for a specific student for a given semester.
-     * Timetable entries are filtered by year, semester and group.
+     * Gets the sessions for a student's year, semester and group, sorted by day and hour.
      *
-     * @param s              the student requesting the timetable
+     * @param s              the student
      * @param targetSemester the semester to search
-     * @return a formatted timetable string or a 'not found' message
+     * @return the sessions, read-only
      */
-    public String getTimetableForStudent(Student s, int targetSemester) {
-        StringBuilder sb = new StringBuilder();
-
-        int studentYear = s.getYear();
-        String studentGroup = s.getGroupId();
-
-        List<ScheduledSession> matches = new ArrayList<>();
-
-        for (ScheduledSession session : datamanager.sessions) {
-            Module m = session.getModule();
-            if (m == null) continue;
-
-            boolean sameYear = (m.getYear() == studentYear);
-            boolean sameSemester = (m.getSemester() == targetSemester);
-            boolean groupMatches =
-                    session.getGroupId().equalsIgnoreCase("ALL") ||
-                            session.getGroupId().equalsIgnoreCase(studentGroup);
-
-            if (sameYear && sameSemester && groupMatches) {
-                matches.add(session);
-            }
-        }
-
-        if (matches.isEmpty()) {
-            return "No sessions found.";
-        }
-
-        matches.sort(Comparator
-                .comparingInt((ScheduledSession sess) -> dayOrder(sess.getTimeslot().getDay()))
-                .thenComparingInt(sess -> sess.getTimeslot().getStartHour()));
+    public List<ScheduledSession> sessionsForStudent(Student s, int targetSemester) {
+        return studentCache.get(service, s.getYear(), targetSemester, s.getGroupId());
+    }
 
-        for (ScheduledSession sess : matches) {
-            sb.append(sess).append("\n");
-        }
-        return sb.toString();
+    /**
+     * @return the cache of student timetables, for its hit and miss counts
+     */
+    public StudentTimetableCache getStudentTimetableCache() {
+        return studentCache;
     }
 
     /**
      * Retrieves all sessions taught by a specific lecturer.
      *
      * @param l the lecturer
-     * @return the lecturer's timetable or a 'not found' message
+     * @return the sessions taught by the lecturer
      */
-    public String getTimetableForLecturer(Lecturer l) {
-        StringBuilder sb = new StringBuilder();
-
-        for (ScheduledSession session : datamanager.sessions) {
+    public List<ScheduledSession> sessionsForLecturer(Lecturer l) {
+        List<ScheduledSession> result = new ArrayList<>();
+        for (ScheduledSession session : service.snapshot().getSessionsForLecturer(l.getLecturerId())) {
             if (session.getLecturer().equals(l)) {
-                sb.append(session).append("\n");
+                result.add(session);
             }
         }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
+        return result;
     }
 
     /**
-     * Retrieves and prints every scheduled session in the system.
-     *
-     * @return a full timetable or a 'not found' message
+     * @return every session in the current timetable, read-only
      */
-    public String getFullTimetable() {
-        StringBuilder sb = new StringBuilder();
+    public List<ScheduledSession> allSessions() {
+        return service.snapshot().getSessions();
+    }
 
-        for (ScheduledSession s : datamanager.sessions) {
-            sb.append(s).append("\n");
+    /**
+     * Finds the rooms of a type, big enough for a class, that are free for a range of hours.
+     * The candidates come from the capacity sorted room index and each one is checked
+     * against its busy bitmap.
+     *
+     * @param day         the day e.g. "WED"
+     * @param startHour   the first hour needed
+     * @param endHour     the hour the booking would end
+     * @param lab         true for labs, false for teaching rooms
+     * @param minCapacity the smallest capacity needed
+     * @return the free rooms from smallest to largest
+     */
+    public List<Room> findFreeRooms(String day, int startHour, int endHour, boolean lab, int minCapacity) {
+        if (OccupancyGrid.dayIndex(day) < 0 || startHour < OccupancyGrid.START_HOUR
+                || endHour > OccupancyGrid.END_HOUR || endHour <= startHour) {
+            System.out.println("Times must be on one weekday between " + OccupancyGrid.START_HOUR
+                    + ":00 and " + OccupancyGrid.END_HOUR + ":00");
+            return new ArrayList<>();
         }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
+        long wanted = OccupancyGrid.mask(new Timeslot(day, startHour, endHour - startHour));
+        List<Room> candidates = datamanager.getRoomIndex().roomsWithCapacity(lab, minCapacity);
+        return availability.freeRooms(service.snapshot(), candidates, wanted);
+    }
+
+    /**
+     * Finds times when a set of lecturers, groups and students could meet, for example
+     * for a make-up class. Every start time in the teaching week is returned, ranked by
+     * how many of them are busy then, so times when everyone is free come first.
+     *
+     * A group or student is busy whenever their own timetable for the semester has a
+     * session, the same sessions sessionsForStudent returns.
+     *
+     * @param lecturers the lecturers taking part
+     * @param groupYear the year of the groups
+     * @param groupIds  the named groups of that year taking part, e.g. "G1"
+     * @param students  the students taking part
+     * @param semester  the semester to plan in
+     * @param hours     how long the meeting is
+     * @param limit     the most slots to return
+     * @return the slots, best first
+     */
+    public List<FreeSlot> findCommonFreeSlots(List<Lecturer> lecturers, int groupYear, List<String> groupIds,
+                                              List<Student> students, int semester, int hours, int limit) {
+        long[] busy = availability.busy(service.snapshot(), lecturers, groupYear, groupIds, students, semester);
+        List<FreeSlot> ranked = AvailabilityIndex.rank(busy, hours);
+        return ranked.size() > limit ? new ArrayList<>(ranked.subList(0, Math.max(0, limit))) : ranked;
     }
 
     /**
@@ -145,17 +152,25 @@ public class TimetableController {
      * @return true if added successfully, false if a conflict exists
      */
     public boolean addSession(ScheduledSession newSession) {
-        for (ScheduledSession existing : datamanager.sessions) {
-            if (existing.sameTimeWith(newSession)) {
-                System.out.println("Unable to add session : Interferes with " + existing);
-                return false;
-            }
+        List<String> conflicts = service.addSession(newSession);
+        if (!conflicts.isEmpty()) {
+            printConflicts(conflicts);
+            return false;
         }
-        datamanager.sessions.add(newSession);
+        changed(newSession);
         System.out.println("Session added: " + newSession);
         return true;
     }
 
+    /**
+     * Checks the current timetable for room, lecturer and student group clashes.
+     *
+     * @return every clash found
+     */
+    public ConflictReport auditConflicts() {
+        return new ConflictAuditor().audit(service.snapshot().getSessions());
+    }
+
     /**
      * Finds and returns all room booking conflicts across the timetable.
      *
@@ -163,39 +178,21 @@ public class TimetableController {
      */
     public List<String> findRoomConflicts() {
         List<String> conflicts = new ArrayList<>();
-        List<ScheduledSession> sessions = datamanager.sessions;
-
-        for (int i = 0; i < sessions.size(); i++) {
-            for (int j = i + 1; j < sessions.size(); j++) {
-                ScheduledSession a = sessions.get(i);
-                ScheduledSession b = sessions.get(j);
-
-                if (a.getRoom() == null || b.getRoom() == null) continue;
-
-                boolean sameRoom = a.getRoom().getRoomId()
-                        .equalsIgnoreCase(b.getRoom().getRoomId());
-                boolean overlap = a.getTimeslot().overlaps(b.getTimeslot());
-
-                if (sameRoom && overlap) {
-                    conflicts.add("ROOM CONFLICT: " + a + " <--> " + b);
-                }
-            }
+        for (Conflict c : auditConflicts().getConflicts(Conflict.Type.ROOM)) {
+            conflicts.add(c.toString());
         }
         return conflicts;
     }
 
     /**
-     * Returns the timetable for a programme year and semester.
-     *
      * @param programmeId the programme ID or "ALL"
      * @param year        the academic year
      * @param semester    the semester number
-     * @return the matching sessions 
+     * @return the sessions for the programme year and semester
      */
-    public String getTimetableForCourseYear(String programmeId, int year, int semester) {
-        StringBuilder sb = new StringBuilder();
-
-        for (ScheduledSession session : datamanager.sessions) {
+    public List<ScheduledSession> sessionsForCourseYear(String programmeId, int year, int semester) {
+        List<ScheduledSession> result = new ArrayList<>();
+        for (ScheduledSession session : service.snapshot().getSessions()) {
             Module m = session.getModule();
             if (m == null) continue;
 
@@ -205,117 +202,116 @@ public class TimetableController {
             boolean sameSemester = m.getSemester() == semester;
 
             if (sameProgramme && sameYear && sameSemester) {
-                sb.append(session).append("\n");
+                result.add(session);
             }
         }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
+        return result;
     }
 
     /**
-     * Returns all scheduled sessions for a specific module code.
-     *
      * @param moduleCode the module code
-     * @return the timetable for the module
+     * @return the sessions for the module, read-only
      */
-    public String getTimetableForModule(String moduleCode) {
-        StringBuilder sb = new StringBuilder();
-
-        for (ScheduledSession session : datamanager.sessions) {
-            Module m = session.getModule();
-            if (m != null && m.getModuleCode().equalsIgnoreCase(moduleCode)) {
-                sb.append(session).append("\n");
-            }
-        }
-        return sb.length() == 0 ?
-                "No sessions found for module " + moduleCode : sb.toString();
+    public List<ScheduledSession> sessionsForModule(String moduleCode) {
+        return service.snapshot().getSessionsForModule(moduleCode);
     }
 
     /**
-     * Returns the sessions scheduled in a specific room.
-     *
      * @param roomId the room ID
-     * @return the timetable for the room
+     * @return the sessions held in the room, read-only
      */
-    public String getTimetableForRoom(String roomId) {
-        StringBuilder sb = new StringBuilder();
-
-        for (ScheduledSession session : datamanager.sessions) {
-            Room room = session.getRoom();
-            if (room != null && room.getRoomId().equalsIgnoreCase(roomId)) {
-                sb.append(session).append("\n");
-            }
-        }
-        return sb.length() == 0 ?
-                "No sessions found for room " + roomId : sb.toString();
-    }
-
-        public String getModuleSchedule(String moduleCode) {
-        StringBuilder sb = new StringBuilder();
-        for (ScheduledSession s : datamanager.sessions) {
-            Module m = s.getModule();
-            if (m != null && m.getModuleCode().equalsIgnoreCase(moduleCode)) {
-                sb.append(s).append("\n");
-            }
-        }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
+    public List<ScheduledSession> sessionsForRoom(String roomId) {
+        return service.snapshot().getSessionsForRoom(roomId);
     }
 
-    public String getRoomSchedule(String roomId) {
-        StringBuilder sb = new StringBuilder();
-        for (ScheduledSession s : datamanager.sessions) {
-            if (s.getRoom() != null && s.getRoom().getRoomId().equalsIgnoreCase(roomId)) {
-                sb.append(s).append("\n");
-            }
-        }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
-    }
-
-    public String getProgrammeSchedule(String programmeId, Integer semester) {
-        StringBuilder sb = new StringBuilder();
-        for (ScheduledSession s : datamanager.sessions) {
+    /**
+     * @param programmeId the programme ID
+     * @param semester    the semester number, or null for both
+     * @return the sessions for the programme
+     */
+    public List<ScheduledSession> sessionsForProgramme(String programmeId, Integer semester) {
+        List<ScheduledSession> result = new ArrayList<>();
+        for (ScheduledSession s : service.snapshot().getSessions()) {
             Module m = s.getModule();
             if (m == null) continue;
             if (!m.getProgrammeId().equalsIgnoreCase(programmeId)) continue;
             if (semester != null && m.getSemester() != semester) continue;
-            sb.append(s).append("\n");
+            result.add(s);
         }
-        return sb.length() == 0 ? "No sessions found." : sb.toString();
+        return result;
     }
 
-    /** Returns all sessions with an index so admins can pick them. */
-    public String listSessionsWithIndex() {
-        if (datamanager.sessions.isEmpty()) return "No sessions found.";
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < datamanager.sessions.size(); i++) {
-            sb.append(i).append(": ").append(datamanager.sessions.get(i)).append("\n");
-        }
-        return sb.toString();
+    /**
+     * @return a copy of the stored sessions with their IDs, for the ID based admin helpers
+     */
+    public List<ScheduledSession> storedSessions() {
+        return service.getStoredSessions();
     }
 
-    /** Admin helper to remove a session by index. */
-    public boolean removeSessionByIndex(int idx) {
-        if (idx < 0 || idx >= datamanager.sessions.size()) return false;
-        ScheduledSession target = datamanager.sessions.remove(idx);
-        service.getAllSessions().remove(target);
-        return true;
+    /**
+     * Writes one page of sessions straight to a writer, one per line.
+     *
+     * @param sessions the sessions, e.g. from sessionsForRoom
+     * @param out      where to write
+     * @param offset   the first row to write
+     * @param limit    the most rows to write
+     * @return the offset of the next page, or -1 if there are no more rows
+     * @throws IOException if writing fails
+     */
+    public int render(List<ScheduledSession> sessions, Appendable out, int offset, int limit) throws IOException {
+        SessionCursor cursor = new SessionCursor(sessions, offset, false);
+        cursor.nextPage(out, limit);
+        return cursor.hasNext() ? cursor.getPosition() : -1;
     }
 
-    /** Admin helper to update a session by index with conflict checks. */
-    public boolean updateSessionByIndex(int idx, String moduleCode, String day, int startHour,
-                                        int endHour, String roomId, String lecturerId, String groupId) {
-        if (idx < 0 || idx >= datamanager.sessions.size()) return false;
+    /**
+     * Opens a cursor for writing sessions a page at a time.
+     *
+     * @param sessions the sessions to page through
+     * @param withIds true to show each session's ID
+     * @return a cursor at the first row
+     */
+    public SessionCursor cursor(List<ScheduledSession> sessions, boolean withIds) {
+        return new SessionCursor(sessions, 0, withIds);
+    }
 
-        ScheduledSession old = datamanager.sessions.get(idx);
-        service.getAllSessions().remove(old);
-        datamanager.sessions.remove(idx);
+    /** Admin helper to remove a session by its ID. */
+    public boolean removeSessionById(int id) {
+        ScheduledSession target = service.removeSession(id);
+        if (target == null) return false;
+        changed(target);
+        return true;
+    }
 
-        boolean added = addSessionAdmin(moduleCode, day, startHour, endHour, roomId, lecturerId, groupId);
-        if (!added) {
-            // rollback
-            datamanager.sessions.add(idx, old);
-            service.getAllSessions().add(old);
+    /**
+     * Admin helper to update a session by its ID with conflict checks.
+     * The old session is swapped for the new one in a single service call,
+     * so no other change can take its place in between. The session keeps its ID.
+     * If the ID is no longer in use, for example because the session was removed,
+     * nothing is changed.
+     */
+    public boolean updateSessionById(int id, String moduleCode, String day, int startHour,
+                                     int endHour, String roomId, String lecturerId, String groupId) {
+        List<String> problems = new ArrayList<>();
+        ScheduledSession updated = buildSession(moduleCode, day, startHour, endHour, roomId, lecturerId, groupId, problems);
+        problems.forEach(System.out::println);
+        if (updated == null) return false;
+
+        ScheduledSession old = service.findSession(id);
+        if (old == null) {
+            System.out.println("No session with ID " + id);
+            return false;
+        }
+        List<String> conflicts = service.replaceSession(old, updated);
+        if (!conflicts.isEmpty()) {
+            printConflicts(conflicts);
+            return false;
         }
-        return added;
+
+        changed(old);
+        changed(updated);
+        System.out.println("Session updated: " + updated);
+        return true;
     }
 
 
@@ -336,55 +332,114 @@ public class TimetableController {
                                    int endHour, String roomId, String lecturerId,
                                    String groupId) {
 
+        List<String> problems = new ArrayList<>();
+        ScheduledSession newSession = buildSession(moduleCode, day, startHour, endHour, roomId, lecturerId, groupId, problems);
+        problems.forEach(System.out::println);
+        if (newSession == null) return false;
+
+        List<String> conflicts = service.addSession(newSession);
+        if (!conflicts.isEmpty()) {
+            printConflicts(conflicts);
+            return false;
+        }
+
+        changed(newSession);
+        System.out.println("Session added: " + newSession);
+        return true;
+    }
+
+    /**
+     * Adds a block of sessions for admins, for example a planned timetable being imported.
+     * Each row is: module code, day, start hour, end hour, room ID, lecturer ID, group.
+     * Every row is checked against the timetable and against the other rows, and the
+     * sessions are only added if all of them are valid.
+     *
+     * @param rows the sessions to add
+     * @return the problems with each bad row by row number, empty if every session was added
+     */
+    public Map<Integer, List<String>> addSessionsAdmin(List<String[]> rows) {
+        Map<Integer, List<String>> report = new TreeMap<>();
+        List<ScheduledSession> batch = new ArrayList<>(rows.size());
+
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            List<String> problems = new ArrayList<>();
+            ScheduledSession session = null;
+            if (row.length < 7) {
+                problems.add("Expected 7 values but found " + row.length);
+            } else {
+                try {
+                    session = buildSession(row[0], row[1], Integer.parseInt(row[2].trim()),
+                            Integer.parseInt(row[3].trim()), row[4], row[5], row[6], problems);
+                } catch (NumberFormatException e) {
+                    problems.add("Invalid hour: " + e.getMessage());
+                }
+            }
+            if (session == null) report.put(i, problems);
+            else batch.add(session);
+        }
+        if (!report.isEmpty()) return report;
+
+        report = service.addSessions(batch);
+        if (!report.isEmpty()) return report;
+        for (ScheduledSession session : batch) {
+            changed(session);
+        }
+        System.out.println("Added " + batch.size() + " sessions.");
+        return report;
+    }
+
+    /**
+     * Looks up the module, room and lecturer for an admin entry and checks the
+     * duration and room size.
+     *
+     * @param problems where the reasons an entry is invalid are added
+     * @return the new session, or null if any of the details are invalid
+     */
+    private ScheduledSession buildSession(String moduleCode, String day, int startHour,
+                                          int endHour, String roomId, String lecturerId,
+                                          String groupId, List<String> problems) {
+
         Module module = datamanager.findModule(moduleCode);
         Room room = datamanager.findRoom(roomId);
         Lecturer lecturer = datamanager.findLecturer(lecturerId);
 
         if (module == null || room == null || lecturer == null) {
-            System.out.println("Invalid module or room or lecturer");
-            return false;
+            problems.add("Invalid module or room or lecturer");
+            return null;
         }
 
         int duration = endHour - startHour;
         if (duration <= 0) {
-            System.out.println("Invalid duration");
-            return false;
+            problems.add("Invalid duration");
+            return null;
         }
 
     
         int neededCap = (groupId == null || groupId.equalsIgnoreCase("ALL")) ? 60 : 30;
         if (room.getCapacity() < neededCap) {
-            System.out.println("Room too small for group");
-            return false;
+            problems.add("Room too small for group");
+            Room suggestion = datamanager.getRoomIndex().smallestWithCapacity(room.isLab(), neededCap);
+            if (suggestion != null) {
+                problems.add("Smallest suitable room: " + suggestion);
+            }
+            return null;
         }
 
         Timeslot slot = new Timeslot(day.toUpperCase(), startHour, duration);
-        ScheduledSession newSession = new ScheduledSession(module, lecturer, room, slot, groupId);
-
-        List<String> conflicts = service.addSession(newSession);
-        if (!conflicts.isEmpty()) {
-            System.out.println("Unable to add session.");
-            for (String conflict : conflicts) {
-                System.out.println(" - " + conflict);
-            }
-            return false;
-        }
+        return new ScheduledSession(module, lecturer, room, slot, groupId);
+    }
 
-        datamanager.sessions.add(newSession);
-        System.out.println("Session added: " + newSession);
-        return true;
+    /** Updates the cached views after a session is added, removed or replaced. */
+    private void changed(ScheduledSession session) {
+        studentCache.invalidate(session);
+        availability.update(service.snapshot(), session);
     }
 
-    /** Converts day names into numbers. */
-    private int dayOrder(String day) {
-        if (day == null) return 99;
-        return switch (day.toUpperCase()) {
-            case "MON" -> 1;
-            case "TUE" -> 2;
-            case "WED" -> 3;
-            case "THU" -> 4;
-            case "FRI" -> 5;
-            default -> 99;
-        };
+    private void printConflicts(List<String> conflicts) {
+        System.out.println("Unable to add session.");
+        for (String conflict : conflicts) {
+            System.out.println(" - " + conflict);
+        }
     }
 }
@@ -4,33 +4,41 @@ import Model.Academic.Module;
 import Model.People.Lecturer;
 import Model.Room.Room;
 import Model.Timetable.ScheduledSession;
-import Model.Timetable.Timeslot;
 import Model.Timetable.TimetableService;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Builds an automatic timetable by placing module lecture, lab and tutorial hours into 
+ * Builds an automatic timetable by placing module lecture, lab and tutorial hours into
  * available room/time slots and then writes the result to a CSV fil.
  */
 public class TimetableGenerator {
 
-    private static final String[] DAYS = {"MON", "TUE", "WED", "THU", "FRI"};
-    private static final int START_HOUR = 9;
-    private static final int END_HOUR = 18; // last start is 17
+    private static final String[] DAYS = OccupancyGrid.DAYS;
+    private static final int START_HOUR = OccupancyGrid.START_HOUR;
+    private static final int END_HOUR = OccupancyGrid.END_HOUR;
+    private static final int BACKTRACK_LIMIT = 10_000;
+    private static final long IMPROVE_SLICE_NANOS = 250_000_000L;
+    // nanoTime values are compared by subtraction, which only works for gaps below 2^63 ns
+    private static final long MAX_BUDGET_NANOS = Long.MAX_VALUE / 2;
 
     private final DataManager data;
     private final TimetableService service;
-    private final List<ScheduledSession> generated = new ArrayList<>();
     private final Random random = new Random();
-    
+    private volatile GenerationResult bestSoFar;
+    private GenerationResult lastLoaded;
+
     /**
      * Creates a timetable generator using the data and timetable service
-     * 
+     *
      * @param data the data storage for modules, lecturers, rooms etc
      * @param service the timetable service which checks for conflicts
      */
@@ -39,159 +47,619 @@ public class TimetableGenerator {
         this.service = service;
     }
 
+    /**
+     * Runs one greedy generation and streams each session to the CSV file as soon
+     * as it is placed, then loads the timetable into the service and data manager.
+     *
+     * The other ...AndLog methods write the file only once their run has finished,
+     * because the backtracking solver, the optimiser and the best-of runs can still
+     * change or drop sessions until then.
+     *
+     * @param outputCsvPath the file to write the timetable to
+     */
     public void generateAndLog(String outputCsvPath) {
-        generated.clear();
-        List<String[]> rows = new ArrayList<>();
-        rows.add(new String[]{"sessionId", "moduleCode", "day", "start", "end", "roomId", "lecturerId", "groupId"});
+        GenerationResult result;
+        try (SessionSink sink = new CsvSessionSink(outputCsvPath)) {
+            result = generate(random.nextLong(), sink);
+        }
+        load(result);
+        System.out.println("Generated " + result.getSessions().size() + " sessions to " + outputCsvPath);
+    }
 
-        int nextId = 1;
+    /**
+     * Runs several independent generations at the same time, each with its own
+     * seed, and keeps the one that leaves the fewest hours unplaced.
+     *
+     * @param outputCsvPath the file to write the chosen timetable to
+     * @param runs          how many generations to run
+     * @return the chosen result
+     */
+    public GenerationResult generateBestAndLog(String outputCsvPath, int runs) {
+        GenerationResult best = generateBest(runs);
+        commit(best, outputCsvPath);
+        return best;
+    }
 
-        for (Module module : data.modules) {
-            Lecturer lecturer = pickLecturerForModule(module);
-            if (lecturer == null) {
-                System.out.println("No lecturer for " + module.getModuleCode());
-                continue;
+    /**
+     * Runs several independent generations on a ForkJoinPool using every core.
+     * Nothing is written to the service or data manager.
+     *
+     * @param runs how many generations to run
+     * @return the result with the fewest unplaced hours
+     */
+    public GenerationResult generateBest(int runs) {
+        if (runs < 1) throw new IllegalArgumentException("runs must be at least 1");
+
+        List<ForkJoinTask<GenerationResult>> tasks = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.min(runs, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (int i = 0; i < runs; i++) {
+                long seed = random.nextLong();
+                tasks.add(pool.submit(() -> generate(seed)));
             }
 
-            nextId = scheduleHours(rows, nextId, module, lecturer, module.getLecHours(), false, "ALL");
+            GenerationResult best = null;
+            for (ForkJoinTask<GenerationResult> task : tasks) {
+                GenerationResult result = task.get();
+                if (result.isBetterThan(best)) best = result;
+            }
+            return best;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Generation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
-            if (module.getLabHours() > 0) {
-                nextId = scheduleHours(rows, nextId, module, lecturer, module.getLabHours(), true, "G1");
-                nextId = scheduleHours(rows, nextId, module, lecturer, module.getLabHours(), true, "G2");
+    /**
+     * Runs a single greedy generation with the given seed.
+     * Every call works on its own state, so several can run at once.
+     *
+     * @param seed the random seed used to shuffle days, hours and rooms
+     * @return the generated sessions and the hours that could not be placed
+     */
+    public GenerationResult generate(long seed) {
+        return generate(seed, null);
+    }
+
+    /**
+     * Runs a single greedy generation, passing each session to a sink as soon as it is
+     * placed. Sessions are numbered from 1 in the order they are placed. The result
+     * holds the same session objects, so the sink adds no second copy of the timetable.
+     *
+     * @param seed the random seed used to shuffle days, hours and rooms
+     * @param sink where placed sessions are sent as they are placed, or null
+     * @return the generated sessions and the hours that could not be placed
+     */
+    public GenerationResult generate(long seed, SessionSink sink) {
+        Attempt attempt = new Attempt(seed, sink, 1);
+        attempt.run();
+        return attempt.toResult();
+    }
+
+    /**
+     * Generates the timetable with the most-constrained-first backtracking solver
+     * instead of the greedy random scan, then saves it like generateAndLog.
+     *
+     * @param outputCsvPath the file to write the timetable to
+     * @return the solver result
+     */
+    public GenerationResult generateBacktrackingAndLog(String outputCsvPath) {
+        GenerationResult result = solveBacktracking(random.nextLong());
+        commit(result, outputCsvPath);
+        return result;
+    }
+
+    /**
+     * Runs the backtracking solver once without saving anything.
+     *
+     * @param seed the seed used to break ties between slots
+     * @return the solver result
+     */
+    public GenerationResult solveBacktracking(long seed) {
+        BacktrackingSolver solver = new BacktrackingSolver(data.rooms, BACKTRACK_LIMIT);
+        return solver.solve(buildRequests(), seed);
+    }
+
+    /**
+     * Generates the timetable by placing each programme/year/semester cohort on its
+     * own thread, then saves it like generateAndLog.
+     *
+     * @param outputCsvPath the file to write the timetable to
+     * @return the merged result
+     */
+    public GenerationResult generatePartitionedAndLog(String outputCsvPath) {
+        GenerationResult result = generatePartitioned(random.nextLong());
+        commit(result, outputCsvPath);
+        return result;
+    }
+
+    /**
+     * Runs one partitioned generation without saving anything. Rooms, lecturers and
+     * named groups shared between cohorts are booked through a ReservationTable in
+     * cohort order, so the same seed gives the same timetable on any machine.
+     *
+     * @param seed the seed used to shuffle days, hours and rooms
+     * @return the merged result
+     */
+    public GenerationResult generatePartitioned(long seed) {
+        PartitionedGenerator generator = new PartitionedGenerator(data.rooms, data.getRoomIndex());
+        return generator.generate(buildRequests(), seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the local search optimiser over the current timetable to cut student
+     * idle gaps, long lecturer days and late Friday sessions, then saves the result.
+     * Call this after one of the generate methods has built a timetable. The result
+     * keeps the seed, failures, unplaced hours and evaluation count of that timetable.
+     *
+     * @param outputCsvPath the file to write the improved timetable to
+     * @param moves         how many optimiser moves to try
+     * @return the improved timetable
+     */
+    public GenerationResult improveAndLog(String outputCsvPath, long moves) {
+        LocalSearchOptimiser optimiser = new LocalSearchOptimiser(data.rooms);
+        List<ScheduledSession> current = service.getStoredSessions();
+        int before = optimiser.score(current);
+
+        List<ScheduledSession> improved = optimiser.optimise(current, moves, random.nextLong());
+        int after = optimiser.score(improved);
+        System.out.println("Soft constraint penalty: " + before + " -> " + after);
+
+        GenerationResult result = (lastLoaded != null)
+                ? lastLoaded.withSessions(improved, after)
+                : new GenerationResult(0L, improved, new ArrayList<>(), 0, moves, after);
+        commit(result, outputCsvPath);
+        return result;
+    }
+
+    /**
+     * Keeps generating until the time budget is used up, then saves the best timetable found.
+     *
+     * @param outputCsvPath the file to write the timetable to
+     * @param budgetMillis  how long generation may take in milliseconds
+     * @return the best result found
+     */
+    public GenerationResult generateWithinBudgetAndLog(String outputCsvPath, long budgetMillis) {
+        GenerationResult best = generateWithinBudget(budgetMillis);
+        commit(best, outputCsvPath);
+        return best;
+    }
+
+    /**
+     * Deadline-aware generation. Until every hour is placed it alternates fresh greedy
+     * and backtracking runs with new seeds. Once a complete timetable exists, the rest of
+     * the budget is spent on the local search optimiser in short slices.
+     *
+     * After every run or slice the best result is published, so getBestSoFar can be called
+     * from another thread at any time. Interrupting the calling thread stops the search
+     * and returns the best result straight away.
+     *
+     * @param budgetMillis how long generation may take in milliseconds
+     * @return the best result found, at least one run is always completed
+     */
+    public GenerationResult generateWithinBudget(long budgetMillis) {
+        long budgetNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis)), MAX_BUDGET_NANOS);
+        long deadline = System.nanoTime() + budgetNanos;
+        LocalSearchOptimiser optimiser = new LocalSearchOptimiser(data.rooms);
+        bestSoFar = null;
+        int runs = 0;
+
+        do {
+            long seed = random.nextLong();
+            GenerationResult result = (runs % 2 == 0) ? generate(seed) : solveBacktracking(seed);
+            result = result.withSessions(result.getSessions(), optimiser.score(result.getSessions()));
+            if (result.isBetterThan(bestSoFar)) bestSoFar = result;
+            runs++;
+        } while (bestSoFar.getUnplacedHours() > 0 && !outOfTime(deadline));
+
+        int slices = 0;
+        while (!outOfTime(deadline)) {
+            GenerationResult best = bestSoFar;
+            long now = System.nanoTime();
+            long sliceEnd = deadline - now < IMPROVE_SLICE_NANOS ? deadline : now + IMPROVE_SLICE_NANOS;
+            List<ScheduledSession> improved = optimiser.optimiseUntil(best.getSessions(), random.nextLong(), sliceEnd);
+            GenerationResult result = best.withSessions(improved, optimiser.score(improved));
+            if (result.isBetterThan(best)) bestSoFar = result;
+            slices++;
+        }
+
+        System.out.println("Anytime generation: " + runs + " runs, " + slices + " optimiser slices. Best: " + bestSoFar);
+        return bestSoFar;
+    }
+
+    /**
+     * Gets the best timetable found by the current or last call to generateWithinBudget.
+     * Safe to call from another thread while generation is running.
+     *
+     * @return the best result so far, or null if no run has finished yet
+     */
+    public GenerationResult getBestSoFar() {
+        return bestSoFar;
+    }
+
+    private static boolean outOfTime(long deadline) {
+        return System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Re-generates the timetable after modules, rooms or lecturers have changed,
+     * keeping every stored session that is still valid.
+     *
+     * @param outputCsvPath the file to write the timetable to
+     * @return the updated timetable
+     */
+    public GenerationResult regenerateAndLog(String outputCsvPath) {
+        return regenerateAndLog(service.getStoredSessions(), outputCsvPath);
+    }
+
+    /**
+     * Re-generates the timetable from a previous one, for example sessions read
+     * back with DataManager.loadSessions after the CSV files were edited.
+     * Only the hours that are no longer covered by a valid session are placed again.
+     *
+     * @param previous      the previous timetable
+     * @param outputCsvPath the file to write the timetable to
+     * @return the updated timetable
+     */
+    public GenerationResult regenerateAndLog(List<ScheduledSession> previous, String outputCsvPath) {
+        GenerationResult result = regenerate(previous, random.nextLong());
+        commit(result, outputCsvPath);
+        return result;
+    }
+
+    /**
+     * Compares a previous timetable with the current modules, rooms and lecturers.
+     * A session is kept when its module, room and lecturer still exist and are unchanged,
+     * the room is still suitable, the module still needs the hours and it does not clash
+     * with the sessions kept before it. Everything else is placed again by the greedy search.
+     * Each module keeps its previous lecturer while that lecturer is still listed for it,
+     * so only the modules that lost their lecturer are matched again.
+     *
+     * @param previous the previous timetable
+     * @param seed     the random seed for the hours that are placed again
+     * @return the updated timetable
+     */
+    public GenerationResult regenerate(List<ScheduledSession> previous, long seed) {
+        Map<String, Module> modules = new HashMap<>();
+        for (Module m : data.modules) modules.put(m.getModuleCode(), m);
+        Map<String, Room> rooms = new HashMap<>();
+        for (Room r : data.rooms) rooms.put(r.getRoomId(), r);
+
+        Map<Module, Lecturer> previousLecturers = new HashMap<>();
+        for (ScheduledSession old : previous) {
+            if (old.getModule() == null || old.getLecturer() == null) continue;
+            Module module = modules.get(old.getModule().getModuleCode());
+            if (module != null) previousLecturers.putIfAbsent(module, old.getLecturer());
+        }
+
+        List<PlacementRequest> requests = buildRequests(
+                new LecturerAssigner(data.lecturers).assign(data.modules, previousLecturers));
+        Map<String, PlacementRequest> requestByKey = new HashMap<>();
+        Map<String, Integer> hoursLeft = new HashMap<>();
+        for (PlacementRequest request : requests) {
+            String key = requestKey(request.getModule().getModuleCode(), request.isLab(), request.getGroupId());
+            requestByKey.put(key, request);
+            hoursLeft.put(key, request.getHours());
+        }
+
+        int nextId = 1;
+        for (ScheduledSession old : previous) {
+            nextId = Math.max(nextId, old.getSessionId() + 1);
+        }
+
+        Attempt attempt = new Attempt(seed, null, nextId);
+        for (ScheduledSession old : previous) {
+            if (old.getModule() == null || old.getRoom() == null || old.getTimeslot() == null) continue;
+
+            Module module = modules.get(old.getModule().getModuleCode());
+            Room room = rooms.get(old.getRoom().getRoomId());
+            if (module == null || room == null || !sameDefinition(old.getModule(), module)) continue;
+
+            String key = requestKey(module.getModuleCode(), room.isLab(), old.getGroupId());
+            PlacementRequest request = requestByKey.get(key);
+            int left = hoursLeft.getOrDefault(key, 0);
+            int duration = old.getTimeslot().getDuration();
+            if (request == null || request.getLecturer() == null || left < duration) continue;
+
+            Lecturer lecturer = request.getLecturer();
+            if (old.getLecturer() == null || !lecturer.getLecturerId().equals(old.getLecturer().getLecturerId())) continue;
+            if (room.getCapacity() < request.requiredCapacity()) continue;
+
+            ScheduledSession kept = old;
+            if (old.getModule() != module || old.getRoom() != room || old.getLecturer() != lecturer
+                    || old.getSessionId() <= 0) {
+                kept = new ScheduledSession(module, lecturer, room, old.getTimeslot(), request.getGroupId());
+                kept.setSessionId(old.getSessionId());
             }
+            if (attempt.keep(kept)) hoursLeft.put(key, left - duration);
+        }
 
-            if (module.getTutHours() > 0) {
-                nextId = scheduleHours(rows, nextId, module, lecturer, module.getTutHours(), false, "G1");
-                nextId = scheduleHours(rows, nextId, module, lecturer, module.getTutHours(), false, "G2");
+        List<PlacementRequest> missing = new ArrayList<>();
+        int missingHours = 0;
+        for (PlacementRequest request : requests) {
+            int left = request.getLecturer() == null ? request.getHours()
+                    : hoursLeft.get(requestKey(request.getModule().getModuleCode(), request.isLab(), request.getGroupId()));
+            if (left <= 0) continue;
+            missing.add(new PlacementRequest(request.getModule(), request.getLecturer(), request.isLab(),
+                    request.getGroupId(), left));
+            missingHours += left;
+        }
+
+        System.out.println("Kept " + attempt.generated.size() + " of " + previous.size()
+                + " sessions, placing " + missingHours + " hours again");
+        attempt.run(missing);
+        return attempt.toResult();
+    }
+
+    private static String requestKey(String moduleCode, boolean lab, String groupId) {
+        String group = groupId == null ? "ALL" : groupId.toUpperCase();
+        return moduleCode + "/" + lab + "/" + group;
+    }
+
+    /** Checks that a module read again from the CSV still has the same year, semester, programme and hours. */
+    private static boolean sameDefinition(Module before, Module after) {
+        if (before == after) return true;
+        return before.getYear() == after.getYear()
+                && before.getSemester() == after.getSemester()
+                && before.getProgrammeId().equalsIgnoreCase(after.getProgrammeId())
+                && before.getLecHours() == after.getLecHours()
+                && before.getLabHours() == after.getLabHours()
+                && before.getTutHours() == after.getTutHours();
+    }
+
+    private void commit(GenerationResult result, String outputCsvPath) {
+        numberSessions(result.getSessions());
+        load(result);
+        try (CsvSessionSink sink = new CsvSessionSink(outputCsvPath)) {
+            for (ScheduledSession session : result.getSessions()) {
+                sink.accept(session);
             }
         }
+        System.out.println("Generated " + result.getSessions().size() + " sessions to " + outputCsvPath);
+    }
 
-        service.loadSessions(generated);
-        data.sessions.clear();
-        data.sessions.addAll(generated);
+    /**
+     * Gives every session without an ID the next number after the highest one in the list.
+     * The solvers build their sessions without IDs, so this runs before they are saved.
+     */
+    private static void numberSessions(List<ScheduledSession> sessions) {
+        int nextId = 1;
+        for (ScheduledSession s : sessions) {
+            nextId = Math.max(nextId, s.getSessionId() + 1);
+        }
+        for (ScheduledSession s : sessions) {
+            if (s.getSessionId() <= 0) s.setSessionId(nextId++);
+        }
+    }
 
-        CSVWriter.writeCSV(outputCsvPath, rows);
-        System.out.println("Generated " + generated.size() + " sessions to " + outputCsvPath);
+    private void load(GenerationResult result) {
+        for (String failure : result.getFailures()) {
+            System.out.println(failure);
+        }
+
+        service.loadSessions(result.getSessions());
+        lastLoaded = result;
     }
 
-    private Lecturer pickLecturerForModule(Module m) {
+    /**
+     * Picks the lecturer for a module. The load balanced assignment from the lecturerIds
+     * column is used when there is one, otherwise the module code is hashed onto the
+     * lecturer list as before.
+     */
+    private Lecturer pickLecturerForModule(Module m, Map<Module, Lecturer> assigned) {
+        Lecturer lecturer = assigned.get(m);
+        if (lecturer != null) return lecturer;
+
         if (data.lecturers.isEmpty()) return null;
         int idx = Math.abs(m.getModuleCode().hashCode()) % data.lecturers.size();
         return data.lecturers.get(idx);
     }
 
-    private int scheduleHours(List<String[]> rows,
-                              int nextId,
-                              Module module,
-                              Lecturer lecturer,
-                              int hoursNeeded,
-                              boolean lab,
-                              String groupId) {
+    /**
+     * Splits every module into the lecture, lab and tutorial hours that need to be placed.
+     * Lectures are for the whole class, labs and tutorials are repeated for groups G1 and G2.
+     * A module with no lecturer becomes a single request with no lecturer so it is reported once.
+     *
+     * @return the placement requests in module order
+     */
+    private List<PlacementRequest> buildRequests() {
+        return buildRequests(new LecturerAssigner(data.lecturers).assign(data.modules));
+    }
 
-        int remaining = hoursNeeded;
+    /**
+     * @param assigned the lecturer chosen for each module by the LecturerAssigner
+     * @return the placement requests in module order
+     */
+    private List<PlacementRequest> buildRequests(Map<Module, Lecturer> assigned) {
+        List<PlacementRequest> requests = new ArrayList<>();
 
-        while (remaining > 0) {
-            ScheduledSession session = findFreeSession(module, lecturer, lab, groupId);
-            if (session == null) {
-                System.out.println("Could not place " + module.getModuleCode()
-                        + " (" + (lab ? "lab" : "class") + ", group " + groupId + ")");
-                break;
+        for (Module module : data.modules) {
+            Lecturer lecturer = pickLecturerForModule(module, assigned);
+            if (lecturer == null) {
+                int hours = module.getLecHours() + 2 * (module.getLabHours() + module.getTutHours());
+                requests.add(new PlacementRequest(module, null, false, "ALL", hours));
+                continue;
             }
 
-            generated.add(session);
-            Timeslot t = session.getTimeslot();
-            int endHour = t.getStartHour() + t.getDuration();
-
-            rows.add(new String[]{
-                    String.valueOf(nextId++),
-                    module.getModuleCode(),
-                    t.getDay(),
-                    String.valueOf(t.getStartHour()),
-                    String.valueOf(endHour),
-                    session.getRoom().getRoomId(),
-                    lecturer.getLecturerId(),
-                    session.getGroupId()
-            });
-
-            remaining -= t.getDuration(); // duration is 1
-        }
-
-        return nextId;
-    }
-
-    private ScheduledSession findFreeSession(Module module,
-                                             Lecturer lecturer,
-                                             boolean lab,
-                                             String groupId) {
-
-        List<String> days = new ArrayList<>(Arrays.asList(DAYS));
-        Collections.shuffle(days, random);
-
-        List<Integer> hours = new ArrayList<>();
-        for (int h = START_HOUR; h < END_HOUR; h++) {
-            hours.add(h);
-        }
-        Collections.shuffle(hours, random);
-
-        List<Room> roomCandidates = new ArrayList<>();
-        int neededCapacity = requiredCapacity(groupId);
-        for (Room room : data.rooms) {
-            if (lab && !room.isLab()) continue;
-            if (!lab && room.isLab()) continue;
-            if (room.getCapacity() < neededCapacity) continue;
-            roomCandidates.add(room);
-        }
-        Collections.shuffle(roomCandidates, random);
-        
-        
-        
-         for (String day : days) {
-            for (int hour : hours) {
-                Timeslot slot = new Timeslot(day, hour, 1);
-
-                for (Room room : roomCandidates) {
-                    ScheduledSession candidate =
-                            new ScheduledSession(module, lecturer, room, slot, groupId);
-                    
-                            if (!hasConflict(candidate)) {
-                        return candidate;
-                    }
-                }
+            requests.add(new PlacementRequest(module, lecturer, false, "ALL", module.getLecHours()));
+
+            if (module.getLabHours() > 0) {
+                requests.add(new PlacementRequest(module, lecturer, true, "G1", module.getLabHours()));
+                requests.add(new PlacementRequest(module, lecturer, true, "G2", module.getLabHours()));
+            }
+
+            if (module.getTutHours() > 0) {
+                requests.add(new PlacementRequest(module, lecturer, false, "G1", module.getTutHours()));
+                requests.add(new PlacementRequest(module, lecturer, false, "G2", module.getTutHours()));
             }
         }
-        return null;
+        return requests;
     }
 
-    private int requiredCapacity(String groupId) {
-        if (groupId == null || groupId.equalsIgnoreCase("ALL")) return 60;
-        return 30;
-    }
+    /**
+     * The state of one greedy generation run. Each attempt has its own random
+     * generator, placed sessions and occupancy grid so attempts never share data.
+     * Placed sessions are only kept here when there is no sink to send them to.
+     */
+    private class Attempt {
+
+        private final long seed;
+        private final SessionSink sink;
+        private final Random random;
+        private final List<ScheduledSession> generated = new ArrayList<>();
+        private int nextId;
+        private final OccupancyGrid grid = new OccupancyGrid();
+        private final List<String> failures = new ArrayList<>();
+        private int unplacedHours;
+        private long evaluations;
+        private final int[] dayOrder = new int[DAYS.length];
+        private final int[] hourOrder = new int[END_HOUR - START_HOUR];
+        private final Map<String, RoomClass> roomClasses = new HashMap<>();
+
+        Attempt(long seed, SessionSink sink, int firstId) {
+            this.seed = seed;
+            this.sink = sink;
+            this.nextId = firstId;
+            this.random = new Random(seed);
+            for (int d = 0; d < dayOrder.length; d++) dayOrder[d] = d;
+            for (int h = 0; h < hourOrder.length; h++) hourOrder[h] = START_HOUR + h;
+        }
 
-    private boolean hasConflict(ScheduledSession candidate) {
-        for (ScheduledSession existing : generated) {
-            // room/lecturer/group conflict
-            if (existing.sameTimeWith(candidate)) return true;
+        void run() {
+            run(buildRequests());
+        }
 
-            Module m1 = existing.getModule();
-            Module m2 = candidate.getModule();
-            if (m1 == null || m2 == null) continue;
+        void run(List<PlacementRequest> requests) {
+            for (PlacementRequest request : requests) {
+                if (request.getLecturer() == null) {
+                    failures.add(request.failureMessage());
+                    unplacedHours += request.getHours();
+                    continue;
+                }
+                scheduleHours(request);
+            }
+        }
 
-            boolean sameProgramme = m1.getProgrammeId().equalsIgnoreCase(m2.getProgrammeId());
-            boolean sameYear = m1.getYear() == m2.getYear();
-            boolean sameSemester = m1.getSemester() == m2.getSemester();
-            if (!sameProgramme || !sameYear || !sameSemester) continue;
+        /**
+         * Adds an existing session to this attempt if it does not clash with
+         * anything already placed.
+         *
+         * @return true if the session was kept
+         */
+        boolean keep(ScheduledSession session) {
+            if (!grid.canPlace(session)) return false;
+            grid.place(session);
+            emit(session);
+            return true;
+        }
 
-            boolean overlaps = existing.getTimeslot().overlaps(candidate.getTimeslot());
-            if (!overlaps) continue;
+        GenerationResult toResult() {
+            return new GenerationResult(seed, generated, failures, unplacedHours, evaluations);
+        }
 
-            String g1 = existing.getGroupId();
-            String g2 = candidate.getGroupId();
-            boolean bothAll = (g1 == null || g1.equalsIgnoreCase("ALL")) &&
-                              (g2 == null || g2.equalsIgnoreCase("ALL"));
-            boolean sameGroup = g1 != null && g2 != null && g1.equalsIgnoreCase(g2);
+        private void emit(ScheduledSession session) {
+            generated.add(session);
+            if (sink != null) sink.accept(session);
+        }
+
+        private void scheduleHours(PlacementRequest request) {
+            Module module = request.getModule();
+            Lecturer lecturer = request.getLecturer();
+            String groupId = request.getGroupId();
+            int lecturerIdx = grid.lecturerIndex(lecturer);
+            int groupIdx = grid.groupIndex(module, groupId);
+            RoomClass rooms = roomClass(request.isLab(), request.requiredCapacity());
+
+            int remaining = request.getHours();
+            while (remaining > 0) {
+                int found = findFreeSlot(rooms, lecturerIdx, groupIdx);
+                if (found < 0) {
+                    failures.add(request.failureMessage());
+                    unplacedHours += remaining;
+                    break;
+                }
+
+                int slot = found / rooms.size();
+                int pos = found % rooms.size();
+                grid.book(rooms.gridIndex[pos], lecturerIdx, groupIdx, 1L << slot);
+                ScheduledSession session = new ScheduledSession(module, lecturer, rooms.rooms[pos],
+                        OccupancyGrid.timeslot(slot), groupId);
+                session.setSessionId(nextId++);
+                emit(session);
+
+                remaining--; // every generated session is one hour
+            }
+        }
+
+        /**
+         * Searches the days, hours and rooms in a random order for a free one hour slot.
+         * Only primitive values are used, nothing is created until a slot is chosen.
+         *
+         * @return slot * rooms.size() + room position, or -1 if nothing is free
+         */
+        private int findFreeSlot(RoomClass rooms, int lecturerIdx, int groupIdx) {
+            shuffle(dayOrder);
+            shuffle(hourOrder);
+            shuffle(rooms.order);
+
+            for (int day : dayOrder) {
+                for (int hour : hourOrder) {
+                    int slot = OccupancyGrid.slot(day, hour);
+                    long bit = 1L << slot;
+
+                    evaluations++;
+                    if (!grid.isFree(-1, lecturerIdx, groupIdx, bit)) continue;
+
+                    for (int pos : rooms.order) {
+                        evaluations++;
+                        if (grid.isRoomFree(rooms.gridIndex[pos], bit)) {
+                            return slot * rooms.size() + pos;
+                        }
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /** Gets the rooms for a type and size, building the arrays the first time they are needed. */
+        private RoomClass roomClass(boolean lab, int capacity) {
+            return roomClasses.computeIfAbsent(lab + "/" + capacity,
+                    k -> new RoomClass(data.getRoomIndex().roomsWithCapacity(lab, capacity), grid));
+        }
+
+        /** Fisher-Yates shuffle of an int array in place, the same algorithm as Collections.shuffle. */
+        private void shuffle(int[] values) {
+            for (int i = values.length; i > 1; i--) {
+                int j = random.nextInt(i);
+                int tmp = values[i - 1];
+                values[i - 1] = values[j];
+                values[j] = tmp;
+            }
+        }
+    }
+
+    /** The rooms that suit one type and size of session, with their grid numbers and a reusable search order. */
+    private static class RoomClass {
+        final Room[] rooms;
+        final int[] gridIndex;
+        final int[] order;
+
+        RoomClass(List<Room> suitable, OccupancyGrid grid) {
+            rooms = suitable.toArray(new Room[0]);
+            gridIndex = new int[rooms.length];
+            order = new int[rooms.length];
+            for (int i = 0; i < rooms.length; i++) {
+                gridIndex[i] = grid.roomIndex(rooms[i]);
+                order[i] = i;
+            }
+        }
 
-            if (bothAll || sameGroup) return true;
+        int size() {
+            return rooms.length;
         }
-        return false;
     }
 }